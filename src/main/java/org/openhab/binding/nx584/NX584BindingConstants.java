@@ -21,5 +21,10 @@ public class NX584BindingConstants {
 
     // List of all Thing Type UIDs
     public final static ThingTypeUID THING_TYPE_SECURITY = new ThingTypeUID(BINDING_ID, "security");
+    public final static ThingTypeUID THING_TYPE_ZONE = new ThingTypeUID(BINDING_ID, "zone");
+    public final static ThingTypeUID THING_TYPE_PARTITION = new ThingTypeUID(BINDING_ID, "partition");
+
+    // configuration parameter of zone and partition things
+    public final static String CONFIG_NUMBER = "number";
 
 }
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.nx584.handler;
+
+import static org.openhab.binding.nx584.NX584BindingConstants.CONFIG_NUMBER;
+
+import java.math.BigDecimal;
+
+import org.eclipse.smarthome.core.thing.Bridge;
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.ThingStatus;
+import org.eclipse.smarthome.core.thing.ThingStatusDetail;
+import org.eclipse.smarthome.core.thing.binding.BaseThingHandler;
+import org.eclipse.smarthome.core.types.State;
+
+/**
+ * The {@link NX584ChildHandler} is the base of the zone and partition
+ * handlers. A child attaches itself to the slot of its number in the panel
+ * bridge, which routes the updates of the zone or partition to it by index.
+ * On attaching, the bridge passes it the states already received, so new
+ * things do not query the panel for what the bridge refreshed at startup.
+ *
+ * @author Bernhard Boser - Initial contribution
+ */
+public abstract class NX584ChildHandler extends BaseThingHandler {
+
+    protected int number;
+    protected NX584Handler panel;
+
+    public NX584ChildHandler(Thing thing) {
+        super(thing);
+    }
+
+    @Override
+    public void initialize() {
+        try {
+            number = ((BigDecimal) getConfig().get(CONFIG_NUMBER)).intValue();
+        } catch (Throwable t) {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR, "number not set");
+            return;
+        }
+        Bridge bridge = getBridge();
+        if (bridge == null || !(bridge.getHandler() instanceof NX584Handler)) {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.BRIDGE_OFFLINE, "no panel");
+            return;
+        }
+        panel = (NX584Handler) bridge.getHandler();
+        if (!panel.attach(this)) {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR, "number out of range");
+            panel = null;
+            return;
+        }
+        panelStatusChanged(panel.getThing().getStatus() == ThingStatus.ONLINE);
+        panel.initialize(this);
+    }
+
+    @Override
+    public void dispose() {
+        if (panel != null) {
+            panel.detach(this);
+            panel = null;
+        }
+    }
+
+    /** Zone or partition number, 1 for the first. */
+    public int getNumber() {
+        return number;
+    }
+
+    /** Update a channel of this thing on behalf of the panel. */
+    void update(String channelID, State state) {
+        updateState(channelID, state);
+    }
+
+    void panelStatusChanged(boolean online) {
+        if (online) {
+            updateStatus(ThingStatus.ONLINE);
+        } else {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.BRIDGE_OFFLINE, "no connection to panel");
+        }
+    }
+
+    /** Request the current state of the zone or partition from the panel. */
+    protected abstract void refresh();
+
+}
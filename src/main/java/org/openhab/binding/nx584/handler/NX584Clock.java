@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.nx584.handler;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.openhab.binding.nx584.internal.panel.NX584;
+import org.openhab.binding.nx584.internal.panel.SecurityPanelListener;
+import org.openhab.binding.nx584.internal.panel.message.LogEventView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link NX584Clock} tracks the offset of the panel clock from the host
+ * clock and sets the panel clock when the offset exceeds a threshold.
+ *
+ * The only panel time the binding sees is the minute stamped on log events
+ * (0x0a). An event received at host time t stamped with minute m means the
+ * offset (host - panel) lies in (t - m - 60 s, t - m]. The bounds of
+ * successive live events are intersected, so the estimate gets better with
+ * every event; bounds that contradict each other mean the clock was changed
+ * and the estimate restarts from the new event.
+ *
+ * @author Bernhard Boser - Initial contribution
+ */
+public class NX584Clock implements SecurityPanelListener {
+
+    private static final long MINUTE = 60000;
+    // minimum milliseconds between clock updates
+    private static final long MIN_RESYNC_INTERVAL = 3600000;
+
+    private Logger logger = LoggerFactory.getLogger(NX584Clock.class);
+    private final NX584Handler handler;
+    private final NX584 nx584;
+    private final long threshold;
+
+    // offset bounds in milliseconds, guarded by this
+    private boolean valid;
+    private long low;
+    private long high;
+    private long lastResync;
+    private boolean stopped;
+
+    // decoder, used by dispatcher thread only
+    private final LogEventView logEvent = new LogEventView();
+
+    /**
+     * @param threshold Milliseconds of offset at which the panel clock is set, 0 to never set it
+     */
+    public NX584Clock(NX584Handler handler, NX584 nx584, long threshold) {
+        this.handler = handler;
+        this.nx584 = nx584;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void nx584message(int type, byte data[]) {
+        if (type != 0x0a || !logEvent.wrap(data) || handler.isLogSyncReply(data)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long panel = panelTime(logEvent, now);
+        long offset;
+        synchronized (this) {
+            long lo = now - panel - MINUTE;
+            long hi = now - panel;
+            if (valid && lo < high && hi > low) {
+                low = Math.max(low, lo);
+                high = Math.min(high, hi);
+            } else {
+                valid = true;
+                low = lo;
+                high = hi;
+            }
+            offset = getOffset();
+        }
+        handler.updateState("panel#clock_drift", new DecimalType(offset / 1000));
+        if (threshold > 0 && Math.abs(offset) > threshold) {
+            resync(offset, now);
+        }
+    }
+
+    /** Panel clock behind host clock in milliseconds, 0 if unknown. */
+    public synchronized long getOffset() {
+        return valid ? (low + high) / 2 : 0;
+    }
+
+    /** Host time of the panel time stamped on a log event, milliseconds since epoch. */
+    public long correct(LogEventView event) {
+        long now = System.currentTimeMillis();
+        return panelTime(event, now) + getOffset();
+    }
+
+    /** Stop setting the panel clock, called when the handler is disposed. */
+    public synchronized void stop() {
+        stopped = true;
+    }
+
+    private void resync(long offset, long now) {
+        synchronized (this) {
+            if (stopped || now - lastResync < MIN_RESYNC_INTERVAL) {
+                return;
+            }
+            lastResync = now;
+        }
+        logger.info("panel clock off by " + offset / 1000 + " s, setting clock");
+        nx584.setClock(new Date()).whenComplete((r, t) -> {
+            if (t != null) {
+                logger.warn("cannot set panel clock: " + t.getMessage());
+                return;
+            }
+            synchronized (this) {
+                // start over with the next event
+                valid = false;
+            }
+        });
+    }
+
+    /**
+     * Panel time stamped on event. The panel omits the year, the year is
+     * chosen that puts the time closest before now.
+     */
+    private static long panelTime(LogEventView event, long now) {
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(now);
+        int year = c.get(Calendar.YEAR);
+        c.clear();
+        c.set(year, event.getMonth() - 1, event.getDay(), event.getHour(), event.getMinute());
+        if (c.getTimeInMillis() > now + 31L * 24 * 3600000) {
+            c.add(Calendar.YEAR, -1);
+        }
+        return c.getTimeInMillis();
+    }
+
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.nx584.handler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.types.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link NX584Coalescer} sits between {@link NX584Events} and the
+ * update methods of {@link NX584Handler} and limits the updates of
+ * chattering channels.
+ *
+ * The first update of a channel is passed on immediately and opens a window
+ * during which further updates only replace the pending state; the latest
+ * state is passed on when the window closes. Zone status channels that change
+ * flapCount times within flapPeriod set the zone's flapping channel, which is
+ * cleared once the zone settles. Security critical channels (armed, alarm,
+ * tamper, siren, fire, log) are never delayed.
+ *
+ * Channels are kept per panel, zone and partition, indexed by number, and
+ * passed on to the handler by number.
+ *
+ * @author Bernhard Boser - Initial contribution
+ */
+public class NX584Coalescer {
+
+    private static final String CRITICAL[] = { "armed", "tampered", "siren", "fire", "alarm_memory", "log",
+            "log_time" };
+
+    // owner of a channel
+    private static final int PANEL = 0;
+    private static final int ZONE = 1;
+    private static final int PARTITION = 2;
+
+    private Logger logger = LoggerFactory.getLogger(NX584Coalescer.class);
+    private final NX584Handler handler;
+    private final ScheduledExecutorService scheduler;
+    private final long window;
+    private final int flapCount;
+    private final long flapPeriod;
+    // by channel, per slot: panel, zones 1 ... MAX_ZONES, partitions 1 ... PARTITIONS
+    private final List<Map<String, Entry>> entries = new ArrayList<>();
+
+    private static class Entry {
+        final int owner;
+        final int number;
+        final String channel;
+        State last;
+        State forwarded;
+        State pending;
+        ScheduledFuture<?> flush;
+        // times of the last flapCount changes, ring buffer
+        long changes[];
+        int next;
+        boolean flapping;
+
+        Entry(int owner, int number, String channel) {
+            this.owner = owner;
+            this.number = number;
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * @param window Milliseconds during which updates of a channel are coalesced, 0 to pass on all updates
+     * @param flapCount Number of changes that make a zone flapping, 0 to disable
+     * @param flapPeriod Milliseconds in which flapCount changes must occur
+     */
+    public NX584Coalescer(NX584Handler handler, ScheduledExecutorService scheduler, long window, int flapCount,
+            long flapPeriod) {
+        this.handler = handler;
+        this.scheduler = scheduler;
+        this.window = window;
+        this.flapCount = flapCount;
+        this.flapPeriod = flapPeriod;
+        for (int i = 0; i < 1 + NX584Zones.MAX_ZONES + NX584History.PARTITIONS; i++) {
+            entries.add(new HashMap<>());
+        }
+    }
+
+    /** Update channel of the panel, e.g. zones_open. */
+    public void update(String channel, State state) {
+        update(PANEL, 0, channel, state);
+    }
+
+    /** Update channel of zone, e.g. status. */
+    public void updateZone(int zone, String channel, State state) {
+        update(ZONE, zone, channel, state);
+    }
+
+    /** Update channel of partition, e.g. armed. */
+    public void updatePartition(int partition, String channel, State state) {
+        update(PARTITION, partition, channel, state);
+    }
+
+    private synchronized void update(int owner, int number, String channel, State state) {
+        int slot = slot(owner, number);
+        if (window <= 0 || slot < 0 || isCritical(channel)) {
+            forward(owner, number, channel, state);
+            return;
+        }
+        Entry e = entries.get(slot).get(channel);
+        if (e == null) {
+            e = new Entry(owner, number, channel);
+            entries.get(slot).put(channel, e);
+        }
+        if (owner == ZONE && e.last != null && !e.last.equals(state) && "status".equals(channel)) {
+            changed(e);
+        }
+        e.last = state;
+        if (e.flush != null) {
+            // window open, latest state wins
+            e.pending = state;
+            return;
+        }
+        forward(e, state);
+        final Entry entry = e;
+        e.flush = scheduler.schedule(() -> flush(entry), window, TimeUnit.MILLISECONDS);
+    }
+
+    /** Cancel pending updates. */
+    public synchronized void dispose() {
+        for (Map<String, Entry> channels : entries) {
+            for (Entry e : channels.values()) {
+                if (e.flush != null) {
+                    e.flush.cancel(false);
+                }
+            }
+            channels.clear();
+        }
+    }
+
+    private synchronized void flush(Entry e) {
+        if (e.flush == null) {
+            // disposed
+            return;
+        }
+        e.flush = null;
+        if (e.pending != null) {
+            State state = e.pending;
+            e.pending = null;
+            if (!state.equals(e.forwarded)) {
+                forward(e, state);
+            }
+        }
+    }
+
+    private void forward(Entry e, State state) {
+        e.forwarded = state;
+        forward(e.owner, e.number, e.channel, state);
+    }
+
+    private void forward(int owner, int number, String channel, State state) {
+        switch (owner) {
+            case ZONE:
+                handler.updateZone(number, channel, state);
+                break;
+            case PARTITION:
+                handler.updatePartition(number, channel, state);
+                break;
+            default:
+                handler.updateState("panel#" + channel, state);
+                break;
+        }
+    }
+
+    private void changed(Entry e) {
+        if (flapCount <= 0) {
+            return;
+        }
+        if (e.changes == null) {
+            e.changes = new long[flapCount];
+        }
+        long now = System.currentTimeMillis();
+        e.changes[e.next] = now;
+        e.next = (e.next + 1) % flapCount;
+        long oldest = e.changes[e.next];
+        if (!e.flapping && oldest != 0 && now - oldest <= flapPeriod) {
+            e.flapping = true;
+            logger.info("zone " + e.number + " is flapping");
+            forward(e.owner, e.number, "flapping", OnOffType.ON);
+            scheduler.schedule(() -> checkFlapping(e), flapPeriod, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void checkFlapping(Entry e) {
+        if (!e.flapping) {
+            return;
+        }
+        long oldest = e.changes[e.next];
+        long wait = oldest + flapPeriod - System.currentTimeMillis();
+        if (wait > 0) {
+            // still flapping, check again once the oldest change leaves the period
+            scheduler.schedule(() -> checkFlapping(e), wait, TimeUnit.MILLISECONDS);
+            return;
+        }
+        e.flapping = false;
+        logger.info("zone " + e.number + " stopped flapping");
+        forward(e.owner, e.number, "flapping", OnOffType.OFF);
+    }
+
+    /** Index of the channels of owner number in entries, -1 if out of range. */
+    private static int slot(int owner, int number) {
+        switch (owner) {
+            case ZONE:
+                return number >= 1 && number <= NX584Zones.MAX_ZONES ? number : -1;
+            case PARTITION:
+                return number >= 1 && number <= NX584History.PARTITIONS ? NX584Zones.MAX_ZONES + number : -1;
+            default:
+                return 0;
+        }
+    }
+
+    private static boolean isCritical(String channel) {
+        for (String c : CRITICAL) {
+            if (c.equals(channel)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
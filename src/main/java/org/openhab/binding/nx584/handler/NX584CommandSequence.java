@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.nx584.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.openhab.binding.nx584.internal.panel.NX584;
+
+/**
+ * The {@link NX584CommandSequence} sends an ordered list of commands to the
+ * panel, e.g. bypass zones 3, 7 and 12, then arm partitions 1 and 2 in stay
+ * mode.
+ *
+ * All commands are queued at once and sent back to back. A command is only
+ * sent if the panel accepted the command before it, so the sequence stops at
+ * the first failure (0x1c), rejection or timeout. The result completes once
+ * every step has an outcome.
+ *
+ * The panel toggles the bypass of a zone, so given the zone model, a bypass
+ * step is not sent for a zone that is already bypassed when the sequence is
+ * executed.
+ *
+ * <pre>
+ * commands.sequence().bypassZone(3).bypassZone(7).armStayMode(0x03).execute()
+ * </pre>
+ *
+ * @author Bernhard Boser - Initial contribution
+ */
+public class NX584CommandSequence {
+
+    public enum Outcome {
+        /** Panel acknowledged the command. */
+        DONE,
+        /** Panel failed or rejected the command, or did not respond. */
+        FAILED,
+        /** Not sent because an earlier command failed. */
+        SKIPPED,
+        /** Not sent because the zone already was bypassed. */
+        UNCHANGED
+    }
+
+    /** One command of the sequence and its outcome. */
+    public static class Step {
+        private final String description;
+        private final byte msg[];
+        // zone of a bypass step, 0 for other steps
+        private final int zone;
+        private Outcome outcome;
+        private Throwable failure;
+
+        private Step(String description, byte msg[], int zone) {
+            this.description = description;
+            this.msg = msg;
+            this.zone = zone;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        /** Outcome, null until the sequence has completed. */
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        /** Reason of failure, null unless the outcome is FAILED. */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            return description + ": " + outcome + (failure == null ? "" : " (" + failure.getMessage() + ")");
+        }
+    }
+
+    private final NX584 nx584;
+    private final NX584Zones zones;
+    private final List<Step> steps = new ArrayList<>();
+    private boolean executed;
+
+    /**
+     * @param zones Zone model, null to send every bypass step
+     */
+    NX584CommandSequence(NX584 nx584, NX584Zones zones) {
+        this.nx584 = nx584;
+        this.zones = zones;
+    }
+
+    /**
+     * Bypass zone, unless the zone model reports it bypassed.
+     *
+     * @param zone Zone number. 1 for zone 1.
+     */
+    public NX584CommandSequence bypassZone(int zone) {
+        if (zone < 1) {
+            throw new IllegalArgumentException("zone " + zone);
+        }
+        return add(new Step("bypass zone " + zone, NX584Commands.bypass(zone), zone));
+    }
+
+    /** @param partitions Partition mask, bit 0 for partition 1 */
+    public NX584CommandSequence disarm(int partitions) {
+        return add(keypadFunction("disarm", NX584Commands.DISARM, partitions));
+    }
+
+    /** @param partitions Partition mask, bit 0 for partition 1 */
+    public NX584CommandSequence armAwayMode(int partitions) {
+        return add(keypadFunction("arm away", NX584Commands.ARM_AWAY, partitions));
+    }
+
+    /** @param partitions Partition mask, bit 0 for partition 1 */
+    public NX584CommandSequence armStayMode(int partitions) {
+        return add(keypadFunction("arm stay", NX584Commands.ARM_STAY, partitions));
+    }
+
+    /** @param partitions Partition mask, bit 0 for partition 1 */
+    public NX584CommandSequence initiateAutoArm(int partitions) {
+        return add(keypadFunction("auto arm", NX584Commands.AUTO_ARM, partitions));
+    }
+
+    /** @param partitions Partition mask, bit 0 for partition 1 */
+    public NX584CommandSequence audibleAlarmOff(int partitions) {
+        return add(keypadFunction("alarm off", NX584Commands.ALARM_OFF, partitions));
+    }
+
+    public boolean isEmpty() {
+        return steps.isEmpty();
+    }
+
+    /**
+     * Send the sequence. Can be called once.
+     *
+     * @return Steps with their outcome, in the order added. Completes normally
+     *         also if steps failed.
+     */
+    public synchronized CompletableFuture<List<Step>> execute() {
+        if (executed) {
+            throw new IllegalStateException("sequence already executed");
+        }
+        executed = true;
+        List<Step> send = new ArrayList<>(steps.size());
+        for (Step step : steps) {
+            if (step.zone > 0 && zones != null && zones.isSet(NX584Zones.BYPASSED, step.zone)) {
+                step.outcome = Outcome.UNCHANGED;
+            } else {
+                send.add(step);
+            }
+        }
+        byte msgs[][] = new byte[send.size()][];
+        for (int i = 0; i < msgs.length; i++) {
+            msgs[i] = send.get(i).msg;
+        }
+        List<CompletableFuture<byte[]>> replies = nx584.sendSequence(msgs);
+        List<CompletableFuture<?>> outcomes = new ArrayList<>(replies.size());
+        for (int i = 0; i < replies.size(); i++) {
+            final Step step = send.get(i);
+            outcomes.add(replies.get(i).handle((reply, t) -> {
+                outcome(step, t);
+                return null;
+            }));
+        }
+        return CompletableFuture.allOf(outcomes.toArray(new CompletableFuture<?>[outcomes.size()]))
+                .thenApply(v -> steps);
+    }
+
+    private static void outcome(Step step, Throwable t) {
+        if (t instanceof CompletionException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        if (t == null) {
+            step.outcome = Outcome.DONE;
+        } else if (t instanceof CancellationException) {
+            step.outcome = Outcome.SKIPPED;
+        } else {
+            step.outcome = Outcome.FAILED;
+            step.failure = t;
+        }
+    }
+
+    private synchronized NX584CommandSequence add(Step step) {
+        if (executed) {
+            throw new IllegalStateException("sequence already executed");
+        }
+        steps.add(step);
+        return this;
+    }
+
+    private static Step keypadFunction(String name, int function, int partitions) {
+        String target = partitions == NX584Commands.ALL_PARTITIONS ? "all partitions"
+                : String.format("partitions 0x%02x", partitions);
+        return new Step(name + " " + target, NX584Commands.keypadFunction(function, partitions), 0);
+    }
+
+}
@@ -7,21 +7,49 @@
  */
 package org.openhab.binding.nx584.handler;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.openhab.binding.nx584.internal.panel.NX584;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * The {@link NX584Commands} sends commands and requests to the panel.
+ *
+ * All methods return immediately. Requests complete with the reply message
+ * (first byte is the message type, as passed to SecurityPanelListener),
+ * commands complete when the panel acknowledges them. Failures, rejections
+ * and timeouts complete the future exceptionally, see {@link NX584#sendCommand(byte...)}.
+ *
+ * Requests of an instance created for refreshes are admitted with the budget
+ * of the binding's own refreshes of the panel state, see {@link NX584#sendRefresh(byte...)}.
  *
  * @author Bernhard Boser - Initial contribution
  */
 public class NX584Commands {
 
+    /** Partition mask selecting all partitions. */
+    public static final int ALL_PARTITIONS = 0xff;
+
+    // primary keypad functions
+    static final int ALARM_OFF = 0x00;
+    static final int DISARM = 0x01;
+    static final int ARM_AWAY = 0x02;
+    static final int ARM_STAY = 0x03;
+    static final int AUTO_ARM = 0x05;
+
     private Logger logger = LoggerFactory.getLogger(NX584Commands.class);
     private final NX584 nx584;
+    private final boolean refresh;
 
     public NX584Commands(NX584 nx584) {
+        this(nx584, false);
+    }
+
+    /** @param refresh Send requests as refresh of the panel state by the binding itself */
+    public NX584Commands(NX584 nx584, boolean refresh) {
         this.nx584 = nx584;
+        this.refresh = refresh;
     }
 
     /**
@@ -29,11 +57,11 @@ public class NX584Commands {
      *
      * @param zone Zone number. 1 for zone 1.
      */
-    public void getZoneName(int zone) {
+    public CompletableFuture<byte[]> getZoneName(int zone) {
         if (zone < 1) {
-            return;
+            return invalid("zone " + zone);
         }
-        nx584.sendCommand((byte) 0x23, (byte) (zone - 1));
+        return request((byte) 0x23, (byte) (zone - 1));
     }
 
     /**
@@ -41,11 +69,11 @@ public class NX584Commands {
      *
      * @param zone Zone number. 1 for zone 1.
      */
-    public void getZoneStatus(int zone) {
+    public CompletableFuture<byte[]> getZoneStatus(int zone) {
         if (zone < 1) {
-            return;
+            return invalid("zone " + zone);
         }
-        nx584.sendCommand((byte) 0x24, (byte) (zone - 1));
+        return request((byte) 0x24, (byte) (zone - 1));
     }
 
     /**
@@ -53,20 +81,32 @@ public class NX584Commands {
      *
      * @param partition Partition number. 1 for partition 1.
      */
-    public void getPartitionStatus(int partition) {
+    public CompletableFuture<byte[]> getPartitionStatus(int partition) {
         if (partition < 1) {
-            return;
+            return invalid("partition " + partition);
         }
-        nx584.sendCommand((byte) 0x26, (byte) (partition - 1));
+        return request((byte) 0x26, (byte) (partition - 1));
     }
 
-    public void getPartionSnapshot() {
-        nx584.sendCommand((byte) 0x27);
+    /**
+     * Request zones snapshot message (0x05) for 16 consecutive zones
+     *
+     * @param group Zone group. 0 for zones 1 ... 16, 1 for zones 17 ... 32.
+     */
+    public CompletableFuture<byte[]> getZonesSnapshot(int group) {
+        if (group < 0) {
+            return invalid("zone group " + group);
+        }
+        return request((byte) 0x25, (byte) group);
     }
 
-    public void getSystemStatus() {
+    public CompletableFuture<byte[]> getPartionSnapshot() {
+        return request((byte) 0x27);
+    }
+
+    public CompletableFuture<byte[]> getSystemStatus() {
         logger.debug("getSystemStatus");
-        nx584.sendCommand((byte) 0x28);
+        return request((byte) 0x28);
     }
 
     /**
@@ -74,31 +114,139 @@ public class NX584Commands {
      *
      * @param user User number, >=1
      */
-    public void getUserInformation(int user) {
+    public CompletableFuture<byte[]> getUserInformation(int user) {
         if (user < 1) {
-            return;
+            return invalid("user " + user);
+        }
+        return request((byte) 0x33, (byte) user);
+    }
+
+    /**
+     * Request log event message (0x0a)
+     *
+     * @param event Index of event in panel log, starting at 0.
+     */
+    public CompletableFuture<byte[]> getLogEvent(int event) {
+        if (event < 0) {
+            return invalid("event " + event);
+        }
+        return request((byte) 0x2a, (byte) event);
+    }
+
+    /**
+     * Request program data reply (0x10)
+     *
+     * @param device Bus address of device, 0 for the panel
+     * @param location Logical location, 0 ... 4095
+     */
+    public CompletableFuture<byte[]> getProgramData(int device, int location) {
+        if (location < 0 || location > 0xfff) {
+            return invalid("location " + location);
+        }
+        return request((byte) 0x30, (byte) device, (byte) (location >> 8), (byte) location);
+    }
+
+    public CompletableFuture<Void> disarmPanel() {
+        return disarmPanel(ALL_PARTITIONS);
+    }
+
+    public CompletableFuture<Void> armPanelAwayMode() {
+        return armPanelAwayMode(ALL_PARTITIONS);
+    }
+
+    public CompletableFuture<Void> armPanelStayMode() {
+        return armPanelStayMode(ALL_PARTITIONS);
+    }
+
+    public CompletableFuture<Void> initiateAutoArm() {
+        return initiateAutoArm(ALL_PARTITIONS);
+    }
+
+    public CompletableFuture<Void> audibleAlarmOff() {
+        return audibleAlarmOff(ALL_PARTITIONS);
+    }
+
+    /** @param partitions Partition mask, bit 0 for partition 1 */
+    public CompletableFuture<Void> disarmPanel(int partitions) {
+        return command(keypadFunction(DISARM, partitions));
+    }
+
+    /** @param partitions Partition mask, bit 0 for partition 1 */
+    public CompletableFuture<Void> armPanelAwayMode(int partitions) {
+        return command(keypadFunction(ARM_AWAY, partitions));
+    }
+
+    /** @param partitions Partition mask, bit 0 for partition 1 */
+    public CompletableFuture<Void> armPanelStayMode(int partitions) {
+        return command(keypadFunction(ARM_STAY, partitions));
+    }
+
+    /** @param partitions Partition mask, bit 0 for partition 1 */
+    public CompletableFuture<Void> initiateAutoArm(int partitions) {
+        return command(keypadFunction(AUTO_ARM, partitions));
+    }
+
+    /** @param partitions Partition mask, bit 0 for partition 1 */
+    public CompletableFuture<Void> audibleAlarmOff(int partitions) {
+        return command(keypadFunction(ALARM_OFF, partitions));
+    }
+
+    /**
+     * Toggle bypass of zone (0x3f)
+     *
+     * @param zone Zone number. 1 for zone 1.
+     */
+    public CompletableFuture<Void> bypassZone(int zone) {
+        if (zone < 1) {
+            return invalid("zone " + zone);
         }
-        nx584.sendCommand((byte) 0x33, (byte) user);
+        return command(bypass(zone));
+    }
+
+    /** New, empty command sequence for this panel, sending every bypass step. */
+    public NX584CommandSequence sequence() {
+        return new NX584CommandSequence(nx584, null);
+    }
+
+    /**
+     * New, empty command sequence for this panel.
+     *
+     * @param zones Zone model, bypass steps for zones already bypassed are not sent
+     */
+    public NX584CommandSequence sequence(NX584Zones zones) {
+        return new NX584CommandSequence(nx584, zones);
     }
 
-    public void disarmPanel() {
-        nx584.sendCommand((byte) 0x3d, (byte) 0x01, (byte) 0xff);
+    /** Primary keypad function without pin (0x3d). */
+    static byte[] keypadFunction(int function, int partitions) {
+        return new byte[] { (byte) 0x3d, (byte) function, (byte) partitions };
     }
 
-    public void armPanelAwayMode() {
-        nx584.sendCommand((byte) 0x3d, (byte) 0x02, (byte) 0xff);
+    /** Zone bypass toggle (0x3f). */
+    static byte[] bypass(int zone) {
+        return new byte[] { (byte) 0x3f, (byte) (zone - 1) };
     }
 
-    public void armPanelStayMode() {
-        nx584.sendCommand((byte) 0x3d, (byte) 0x03, (byte) 0xff);
+    private CompletableFuture<byte[]> request(byte... msg) {
+        return refresh ? nx584.sendRefresh(msg) : nx584.sendCommand(msg);
     }
 
-    public void initiateAutoArm() {
-        nx584.sendCommand((byte) 0x3d, (byte) 0x05, (byte) 0xff);
+    private CompletableFuture<Void> command(byte... msg) {
+        CompletableFuture<byte[]> request = nx584.sendCommand(msg);
+        CompletableFuture<Void> result = request.thenApply(reply -> null);
+        // propagate cancellation so the command is not sent
+        result.whenComplete((r, t) -> {
+            if (result.isCancelled()) {
+                request.cancel(false);
+            }
+        });
+        return result;
     }
 
-    public void audibleAlarmOff() {
-        nx584.sendCommand((byte) 0x3d, (byte) 0x00, (byte) 0xff);
+    static <T> CompletableFuture<T> invalid(String msg) {
+        CompletableFuture<T> f = new CompletableFuture<>();
+        f.completeExceptionally(new IllegalArgumentException(msg));
+        return f;
     }
 
 }
@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.nx584.handler;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.openhab.binding.nx584.internal.panel.SecurityPanelListener;
+import org.openhab.binding.nx584.internal.panel.message.PartitionStatusView;
+
+/**
+ * The {@link NX584Countdowns} publishes the seconds remaining of exit and
+ * entry delays, computed locally so that wall panels can show a live
+ * countdown without polling the panel.
+ *
+ * A countdown starts when a partition status message (0x06) reports the
+ * delay starting and runs for the programmed delay, which is configured on
+ * the thing since the panel does not report it. It stops early when the panel
+ * reports the delay ended. The remaining time is published once per second
+ * from a shared {@link NX584TimerWheel}.
+ *
+ * @author Bernhard Boser - Initial contribution
+ */
+public class NX584Countdowns implements SecurityPanelListener {
+
+    private static final int PARTITIONS = 8;
+
+    private final NX584Handler handler;
+    private final NX584TimerWheel wheel;
+    private final long exitDelay;
+    private final long entryDelay;
+    private final Countdown exit[] = new Countdown[PARTITIONS + 1];
+    private final Countdown entry[] = new Countdown[PARTITIONS + 1];
+
+    // decoder, used by dispatcher thread only
+    private final PartitionStatusView partitionStatus = new PartitionStatusView();
+
+    /** Delay of one partition, guarded by the NX584Countdowns instance. */
+    private class Countdown {
+        final int partition;
+        final String channel;
+        boolean active;
+        long deadline;
+        // incremented on start and stop, so stale timer ticks are ignored
+        int generation;
+        long published = -1;
+
+        Countdown(int partition, String channel) {
+            this.partition = partition;
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * @param exitDelay Programmed exit delay in milliseconds
+     * @param entryDelay Programmed entry delay in milliseconds
+     */
+    public NX584Countdowns(NX584Handler handler, NX584TimerWheel wheel, long exitDelay, long entryDelay) {
+        this.handler = handler;
+        this.wheel = wheel;
+        this.exitDelay = exitDelay;
+        this.entryDelay = entryDelay;
+        for (int p = 1; p <= PARTITIONS; p++) {
+            exit[p] = new Countdown(p, "exit_remaining");
+            entry[p] = new Countdown(p, "entry_remaining");
+        }
+    }
+
+    @Override
+    public void nx584message(int type, byte data[]) {
+        if (type != 0x06 || !partitionStatus.wrap(data)) {
+            return;
+        }
+        int p = partitionStatus.getPartition();
+        if (p < 1 || p > PARTITIONS) {
+            return;
+        }
+        update(exit[p], partitionStatus.isExit1() || partitionStatus.isExit2(), exitDelay);
+        update(entry[p], partitionStatus.isEntry(), entryDelay);
+    }
+
+    private synchronized void update(Countdown c, boolean delay, long duration) {
+        if (delay == c.active) {
+            return;
+        }
+        c.active = delay;
+        c.generation++;
+        if (delay) {
+            c.deadline = System.currentTimeMillis() + duration;
+            tick(c, c.generation);
+        } else {
+            publish(c, 0);
+        }
+    }
+
+    private synchronized void tick(Countdown c, int generation) {
+        if (generation != c.generation) {
+            return;
+        }
+        long remaining = Math.max(0, (c.deadline - System.currentTimeMillis() + 999) / 1000);
+        publish(c, remaining);
+        if (remaining > 0) {
+            // next tick when the displayed second changes
+            wheel.schedule(1, () -> tick(c, generation));
+        }
+    }
+
+    private void publish(Countdown c, long remaining) {
+        if (remaining != c.published) {
+            c.published = remaining;
+            handler.updatePartition(c.partition, c.channel, new DecimalType(remaining));
+        }
+    }
+
+}
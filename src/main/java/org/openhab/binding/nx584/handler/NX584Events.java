@@ -7,13 +7,22 @@
  */
 package org.openhab.binding.nx584.handler;
 
-import java.io.UnsupportedEncodingException;
+import java.util.Calendar;
 
+import org.eclipse.smarthome.core.library.types.DateTimeType;
+import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.eclipse.smarthome.core.library.types.OnOffType;
 import org.eclipse.smarthome.core.library.types.OpenClosedType;
 import org.eclipse.smarthome.core.library.types.StringType;
 import org.openhab.binding.nx584.internal.panel.NX584;
 import org.openhab.binding.nx584.internal.panel.SecurityPanelListener;
+import org.openhab.binding.nx584.internal.panel.message.LogEventView;
+import org.openhab.binding.nx584.internal.panel.message.PartitionStatusView;
+import org.openhab.binding.nx584.internal.panel.message.PartitionsSnapshotView;
+import org.openhab.binding.nx584.internal.panel.message.SystemStatusView;
+import org.openhab.binding.nx584.internal.panel.message.ZoneNameView;
+import org.openhab.binding.nx584.internal.panel.message.ZoneStatusView;
+import org.openhab.binding.nx584.internal.panel.message.ZonesSnapshotView;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,9 +34,31 @@ public class NX584Events implements SecurityPanelListener {
 
     private Logger logger = LoggerFactory.getLogger(NX584Events.class);
     private final NX584Handler handler;
+    private final NX584Coalescer coalescer;
+    private final NX584Users users;
+    private final NX584Clock clock;
+    private final NX584Zones zones;
 
-    public NX584Events(NX584Handler handler) {
+    // decoders, reused for every message (called from dispatcher thread only)
+    private final ZoneNameView zoneName = new ZoneNameView();
+    private final ZoneStatusView zoneStatus = new ZoneStatusView();
+    private final ZonesSnapshotView zonesSnapshot = new ZonesSnapshotView();
+    private final PartitionStatusView partitionStatus = new PartitionStatusView();
+    private final PartitionsSnapshotView partitionsSnapshot = new PartitionsSnapshotView();
+    private final SystemStatusView systemStatus = new SystemStatusView();
+    private final LogEventView logEvent = new LogEventView();
+
+    // zone channel of each NX584Zones flag
+    private static final String ZONE_CHANNELS[] = { "status", "tampered", "trouble", "bypassed", "force_armed",
+            "low_battery", "supervision_lost", "alarm_memory" };
+
+    public NX584Events(NX584Handler handler, NX584Coalescer coalescer, NX584Users users, NX584Clock clock,
+            NX584Zones zones) {
         this.handler = handler;
+        this.coalescer = coalescer;
+        this.users = users;
+        this.clock = clock;
+        this.zones = zones;
     }
 
     @Override
@@ -41,7 +72,7 @@ public class NX584Events implements SecurityPanelListener {
                 zoneStatusMessage(msg);
                 break;
             case 0x05:
-                // buggy?
+                zonesSnapshotMessage(msg);
                 break;
             case 0x06:
                 partitionStatusMessage(msg);
@@ -74,67 +105,161 @@ public class NX584Events implements SecurityPanelListener {
     }
 
     private void zoneNameMessage(byte data[]) {
-        if (data[1] < 0 || data[1] > 64) {
-            logger.error("zoneNameMessage Zone number out of range: " + data[1]);
-        }
-        if (data.length != 18) {
+        if (!zoneName.wrap(data)) {
             logger.error("zoneNameMessage Length " + data.length + " is not 18 bytes!");
+            return;
         }
-        int zone = data[1] + 1;
-        final byte b[] = new byte[16];
-        System.arraycopy(data, 1, b, 0, 16);
-        String name = "?";
-        try {
-            name = new String(b, "UTF-8");
-        } catch (UnsupportedEncodingException e1) {
+        int zone = zoneName.getZone();
+        if (zone > zones.getZones()) {
+            logger.warn("zoneNameMessage zone " + zone + " beyond configured " + zones.getZones() + " zones");
         }
-        handler.updateState("zone" + zone + "#name", new StringType(name));
+        String name = zoneName.getName();
+        coalescer.updateZone(zone, "name", new StringType(name));
         logger.debug(String.format("Zone %d name = '%s'", zone, name));
     }
 
     private void zoneStatusMessage(byte data[]) {
-        int zone = data[1] + 1;
-        handler.updateState("zone" + zone + "#status", openClosed(data[6], 0x01));
-        handler.updateState("zone" + zone + "#tampered", onOff(data[6], 0x02));
-        handler.updateState("zone" + zone + "#trouble", onOff(data[6], 0x04));
-        handler.updateState("zone" + zone + "#bypassed", onOff(data[6], 0x08));
-        handler.updateState("zone" + zone + "#force_armed", onOff(data[6], 0x10));
+        if (!zoneStatus.wrap(data)) {
+            logger.warn("zoneStatusMessage too short: " + NX584.bytes2string(data));
+            return;
+        }
+        int zone = zoneStatus.getZone();
+        int changed = zones.update(zone, zoneStatus.getConditionFlags());
+        for (int flag = 0; flag < NX584Zones.FLAGS; flag++) {
+            if ((changed & 1 << flag) != 0) {
+                updateZone(zone, flag, isSet(flag));
+            }
+        }
+        if ((changed & 1 << NX584Zones.FAULTED) != 0) {
+            updateOpenZones();
+        }
         logger.debug(String.format(
                 "ZoneStatus: updated zone %2d, pm=0x%02x ztf1=0x%02x ztf2=0x%02x ztf3=0x%02x zcf1=0x%02x zcf2=0x%02x",
                 zone, data[2], data[3], data[4], data[5], data[6], data[7]));
     }
 
+    private void zonesSnapshotMessage(byte data[]) {
+        logger.debug("received Zones Snapshot: " + NX584.bytes2string(data));
+        if (!zonesSnapshot.wrap(data)) {
+            return;
+        }
+        int first = zonesSnapshot.getFirstZone();
+        snapshot(first, NX584Zones.FAULTED, zonesSnapshot.getZones(0x01));
+        snapshot(first, NX584Zones.BYPASSED, zonesSnapshot.getZones(0x02));
+        snapshot(first, NX584Zones.ALARM_MEMORY, zonesSnapshot.getZones(0x08));
+    }
+
+    /** Update the channels of the snapshot zones whose flag changed. */
+    private void snapshot(int first, int flag, int set) {
+        long changed = zones.update(flag, first, ZonesSnapshotView.ZONES, set);
+        for (long c = changed; c != 0; c &= c - 1) {
+            int i = Long.numberOfTrailingZeros(c);
+            updateZone(first + i, flag, (set & 1 << i) != 0);
+        }
+        if (flag == NX584Zones.FAULTED && changed != 0) {
+            updateOpenZones();
+        }
+    }
+
+    private void updateZone(int zone, int flag, boolean set) {
+        coalescer.updateZone(zone, ZONE_CHANNELS[flag], flag == NX584Zones.FAULTED ? openClosed(set) : onOff(set));
+    }
+
+    private void updateOpenZones() {
+        coalescer.update("zones_open", onOff(zones.any(NX584Zones.FAULTED)));
+        coalescer.update("zones_open_count", new DecimalType(zones.count(NX584Zones.FAULTED)));
+        coalescer.update("zones_open_list", new StringType(zones.list(NX584Zones.FAULTED)));
+    }
+
+    /** NX584Zones flag of the zone status message in zoneStatus. */
+    private boolean isSet(int flag) {
+        switch (flag) {
+            case NX584Zones.FAULTED:
+                return zoneStatus.isFaulted();
+            case NX584Zones.TAMPERED:
+                return zoneStatus.isTampered();
+            case NX584Zones.TROUBLE:
+                return zoneStatus.isTrouble();
+            case NX584Zones.BYPASSED:
+                return zoneStatus.isBypassed();
+            case NX584Zones.INHIBITED:
+                return zoneStatus.isInhibited();
+            case NX584Zones.LOW_BATTERY:
+                return zoneStatus.isLowBattery();
+            case NX584Zones.SUPERVISION_LOST:
+                return zoneStatus.isLossOfSupervision();
+            default:
+                return zoneStatus.isAlarmMemory();
+        }
+    }
+
     private void partitionStatusMessage(byte data[]) {
-        int partition = data[1] + 1;
+        if (!partitionStatus.wrap(data)) {
+            logger.warn("partitionStatusMessage too short: " + NX584.bytes2string(data));
+            return;
+        }
+        int partition = partitionStatus.getPartition();
         logger.debug("received status for partition " + partition + ": " + NX584.bytes2string(data));
-        handler.updateState("partition" + partition + "#armed", onOff(data[2], 0x40));
-        handler.updateState("partition" + partition + "#ready", onOff(data[7], 0x08));
-        handler.updateState("partition" + partition + "#exit1", onOff(data[4], 0x40));
-        handler.updateState("partition" + partition + "#exit2", onOff(data[4], 0x80));
+        coalescer.updatePartition(partition, "armed", onOff(partitionStatus.isArmed()));
+        coalescer.updatePartition(partition, "ready", onOff(partitionStatus.isReadyToForceArm()));
+        coalescer.updatePartition(partition, "exit1", onOff(partitionStatus.isExit1()));
+        coalescer.updatePartition(partition, "exit2", onOff(partitionStatus.isExit2()));
+        coalescer.updatePartition(partition, "entry", onOff(partitionStatus.isEntry()));
+        coalescer.updatePartition(partition, "fire", onOff(partitionStatus.isFire()));
+        coalescer.updatePartition(partition, "siren", onOff(partitionStatus.isSirenOn()));
+        coalescer.updatePartition(partition, "alarm_memory", onOff(partitionStatus.isAlarmMemory()));
+        coalescer.updatePartition(partition, "chime_mode", onOff(partitionStatus.isChimeMode()));
     } // partitionStatusMessage
 
     private void partitionSnapshotMessage(byte data[]) {
         logger.debug("received Partion Snapshot: " + NX584.bytes2string(data));
-        for (int i = 1; i < 9; i++) {
-            byte b = data[i];
-            handler.updateState("partition" + i + "#valid", onOff(b, 0x01));
-            handler.updateState("partition" + i + "#ready", onOff(b, 0x02));
-            handler.updateState("partition" + i + "#armed", onOff(b, 0x04));
-            handler.updateState("partition" + i + "#stay_mode", onOff(b, 0x08));
+        if (!partitionsSnapshot.wrap(data)) {
+            return;
+        }
+        for (int i = 1; i <= PartitionsSnapshotView.PARTITIONS; i++) {
+            coalescer.updatePartition(i, "valid", onOff(partitionsSnapshot.isValid(i)));
+            coalescer.updatePartition(i, "ready", onOff(partitionsSnapshot.isReady(i)));
+            coalescer.updatePartition(i, "armed", onOff(partitionsSnapshot.isArmed(i)));
+            coalescer.updatePartition(i, "stay_mode", onOff(partitionsSnapshot.isStayMode(i)));
         }
     } // partitionSnapshotMessage
 
     private void systemStatusMessage(byte data[]) {
         logger.debug("received System Status Message: " + NX584.bytes2string(data));
-        handler.updateState("panel#line_seizure", offOn(data[2], 0x01));
-        handler.updateState("panel#off_hook", offOn(data[2], 0x02));
-        handler.updateState("panel#ground_fault", offOn(data[3], 0x01));
-        handler.updateState("panel#phone_fault", offOn(data[3], 0x02));
-        handler.updateState("panel#low_battery", offOn(data[3], 0x40));
-        handler.updateState("panel#ac_fail", offOn(data[6], 0x02));
+        if (!systemStatus.wrap(data)) {
+            return;
+        }
+        coalescer.update("line_seizure", offOn(systemStatus.isLineSeizure()));
+        coalescer.update("off_hook", offOn(systemStatus.isOffHook()));
+        coalescer.update("ground_fault", offOn(systemStatus.isGroundFault()));
+        coalescer.update("phone_fault", offOn(systemStatus.isPhoneFault()));
+        coalescer.update("low_battery", offOn(systemStatus.isLowBattery()));
+        coalescer.update("ac_fail", offOn(systemStatus.isACPowerOn()));
+    }
+
+    // event types 0 ... ZONE_EVENT_MAX carry a zone number
+    // (alarm, bypass, tamper, trouble, TX low battery, zone lost and their restores)
+    private static final int ZONE_EVENT_MAX = 11;
+    // event types that carry a user number
+    private static final boolean USER_EVENT[] = new boolean[128];
+
+    static {
+        int user[] = { 18, // Duress
+                40, // Opening
+                41, // Closing
+                43, // Recent closing
+                49, // Cancel
+                53, // Closed with zones bypassed
+                120, // First to open
+                121, // Last to close
+                125, // Re-exit
+        };
+        for (int event : user) {
+            USER_EVENT[event] = true;
+        }
     }
 
-    private final String eventType[] = { "Alarm", // 0
+    private static final String eventType[] = { "Alarm", // 0
             "Alarm restore", // 1
             "Bypass", // 2
             "Bypass restore", // 3
@@ -205,24 +330,50 @@ public class NX584Events implements SecurityPanelListener {
             "Data lost" // 127
     };
 
+    /** Description of log event type, bit 7 (non-reporting event) is ignored. */
+    static String eventTypeName(int type) {
+        return eventType[type & 0x7f];
+    }
+
     private void logEventMessage(byte data[]) {
-        int type = data[3];
-        if ((type & 0x80) != 0) {
-            String msg = eventType[type & 0x7f];
-            handler.updateState("panel#log", new StringType(msg));
+        if (handler.isLogSyncReply(data)) {
+            // historical entry, not a new event
+            return;
+        }
+        if (!logEvent.wrap(data)) {
+            return;
+        }
+        if (logEvent.isNonReporting()) {
+            Calendar time = Calendar.getInstance();
+            time.setTimeInMillis(clock.correct(logEvent));
+            coalescer.update("log_time", new DateTimeType(time));
+            coalescer.update("log", new StringType(describe(logEvent)));
         }
     } // logEventMessage
 
-    private OpenClosedType openClosed(byte info, int mask) {
-        return (info & mask) == 0 ? OpenClosedType.CLOSED : OpenClosedType.OPEN;
+    /** Event type with the zone or user it refers to, e.g. "Closing by user 5 (Alice), partition 1". */
+    private String describe(LogEventView event) {
+        int type = event.getEventType();
+        String msg = eventType[type];
+        if (type <= ZONE_EVENT_MAX) {
+            return msg + ", zone " + (event.getNumber() + 1);
+        }
+        if (USER_EVENT[type]) {
+            return msg + " by " + users.describe(event.getNumber()) + ", partition " + event.getPartition();
+        }
+        return msg;
+    }
+
+    private OpenClosedType openClosed(boolean flag) {
+        return flag ? OpenClosedType.OPEN : OpenClosedType.CLOSED;
     }
 
-    private OnOffType onOff(byte info, int mask) {
-        return (info & mask) == 0 ? OnOffType.OFF : OnOffType.ON;
+    private OnOffType onOff(boolean flag) {
+        return flag ? OnOffType.ON : OnOffType.OFF;
     }
 
-    private OnOffType offOn(byte info, int mask) {
-        return (info & mask) == 0 ? OnOffType.ON : OnOffType.OFF;
+    private OnOffType offOn(boolean flag) {
+        return flag ? OnOffType.OFF : OnOffType.ON;
     }
 
 }
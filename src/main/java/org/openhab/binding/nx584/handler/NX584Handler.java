@@ -7,17 +7,37 @@
  */
 package org.openhab.binding.nx584.handler;
 
+import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import org.eclipse.smarthome.config.core.ConfigConstants;
 import org.eclipse.smarthome.config.core.Configuration;
+import org.eclipse.smarthome.core.thing.Bridge;
 import org.eclipse.smarthome.core.thing.Channel;
 import org.eclipse.smarthome.core.thing.ChannelUID;
-import org.eclipse.smarthome.core.thing.Thing;
-import org.eclipse.smarthome.core.thing.binding.BaseThingHandler;
+import org.eclipse.smarthome.core.thing.ThingStatus;
+import org.eclipse.smarthome.core.thing.ThingStatusDetail;
+import org.eclipse.smarthome.core.thing.binding.BaseBridgeHandler;
 import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.core.types.State;
+import org.openhab.binding.nx584.internal.NX584DiscoveryService;
+import org.openhab.binding.nx584.internal.panel.FrameRecorder;
+import org.openhab.binding.nx584.internal.panel.LinkListener;
 import org.openhab.binding.nx584.internal.panel.NX584;
+import org.openhab.binding.nx584.internal.panel.NX584Exception;
+import org.openhab.binding.nx584.internal.panel.NX584Proxy;
+import org.openhab.binding.nx584.internal.panel.message.ZonesSnapshotView;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,17 +47,57 @@ import gnu.io.NRSerialPort;
  * The {@link NX584Handler} is responsible for handling commands, which are
  * sent to one of the channels.
  *
+ * The panel is a bridge. Updates of zones and partitions that have a zone or
+ * partition thing are routed to it by number; the others go to the channels
+ * of the bridge itself, e.g. zone2#status.
+ *
  * @author Bernhard Boser - Initial contribution
  */
-public class NX584Handler extends BaseThingHandler {
+public class NX584Handler extends BaseBridgeHandler implements LinkListener {
 
     private Logger logger = LoggerFactory.getLogger(NX584Handler.class);
     private NX584 nx584;
     private NX584Commands nx584Commands;
+    // requests of the binding's own refreshes of the panel state, admitted with their own budget
+    private NX584Commands refreshCommands;
+    private NX584LogSync logSync;
+    private NX584Coalescer coalescer;
+    private NX584History history;
+    private NX584Clock clock;
+    private NX584Layout layout;
+    private NX584Heartbeat heartbeat;
+    private NX584StateStore stateStore;
+    private NX584Proxy proxy;
+    private NX584Users users;
+    private NX584TimerWheel timerWheel;
+    private NX584Zones zoneModel;
+    private volatile NX584DiscoveryService discovery;
+    // zone and partition things by number, index 0 unused
+    private final AtomicReferenceArray<NX584ChildHandler> zoneHandlers = new AtomicReferenceArray<>(
+            NX584Zones.MAX_ZONES + 1);
+    private final AtomicReferenceArray<NX584ChildHandler> partitionHandlers = new AtomicReferenceArray<>(
+            NX584History.PARTITIONS + 1);
+    // last state of every zone and partition channel by channel, per number as the handlers above; replayed
+    // to zone and partition things when they attach
+    private final List<Map<String, State>> zoneStates = states(NX584Zones.MAX_ZONES + 1);
+    private final List<Map<String, State>> partitionStates = states(NX584History.PARTITIONS + 1);
     private int zones = 24;
+    private int logSyncInterval = 1000;
+    // link was lost since initialize, resync on reconnect
+    private volatile boolean linkLost;
+    // the panel answered every request of the full refresh, see refresh()
+    private volatile boolean refreshed;
 
-    public NX584Handler(Thing thing) {
-        super(thing);
+    public NX584Handler(Bridge bridge) {
+        super(bridge);
+    }
+
+    private static List<Map<String, State>> states(int n) {
+        List<Map<String, State>> states = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            states.add(new ConcurrentHashMap<>());
+        }
+        return states;
     }
 
     @Override
@@ -47,35 +107,42 @@ public class NX584Handler extends BaseThingHandler {
         if ("panel".equals(id)) {
             switch (command.toString()) {
                 case "setClock":
-                    nx584.setClock(new Date());
+                    logFailure("setClock", nx584.setClock(new Date()));
                     break;
                 case "query":
                     nx584Commands.getSystemStatus();
                     break;
                 case "queryZones":
-                    for (int zone = 1; zone <= zones; zone++) {
-                        nx584Commands.getZoneStatus(zone);
-                    }
+                    refreshZones();
                     break;
                 case "queryZoneNames":
-                    for (int zone = 1; zone <= zones; zone++) {
-                        nx584Commands.getZoneName(zone);
+                    for (int zone : layout.getZones()) {
+                        refreshCommands.getZoneName(zone);
                     }
                     break;
                 case "queryPartitions":
                     for (int partition = 1; partition <= 8; partition++) {
-                        nx584Commands.getPartitionStatus(partition);
+                        refreshCommands.getPartitionStatus(partition);
                     }
                     break;
                 case "arm":
                 case "armAwayMode":
-                    nx584Commands.armPanelAwayMode();
+                    logFailure("armAwayMode", nx584Commands.armPanelAwayMode());
                     break;
                 case "armStayMode":
-                    nx584Commands.armPanelStayMode();
+                    logFailure("armStayMode", nx584Commands.armPanelStayMode());
                     break;
                 case "disarm":
-                    nx584Commands.disarmPanel();
+                    logFailure("disarm", nx584Commands.disarmPanel());
+                    break;
+                case "syncLog":
+                    if (logSync != null) {
+                        logSync.start(scheduler, logSyncInterval);
+                    }
+                    break;
+                case "dumpFrames":
+                    logger.info("NX584: last frames sent (>>) and received (<<):" + System.lineSeparator()
+                            + dumpFrames(FrameRecorder.CAPACITY));
                     break;
                 case "channels":
                     // list all channels
@@ -85,6 +152,10 @@ public class NX584Handler extends BaseThingHandler {
                     }
                     break;
                 default:
+                    if (command.toString().startsWith("sequence ")) {
+                        sequence(command.toString().substring("sequence ".length()));
+                        break;
+                    }
                     logger.warn("NX584: unrecognized command '" + command + "' (ignored)");
             }
         } else {
@@ -114,24 +185,104 @@ public class NX584Handler extends BaseThingHandler {
             zones = ((BigDecimal) config.get("zones")).intValue();
         } catch (Throwable t) {
         }
+        try {
+            logSyncInterval = ((BigDecimal) config.get("logsync")).intValue();
+        } catch (Throwable t) {
+        }
+        int coalesce = 500;
+        int flapCount = 6;
+        int flapPeriod = 60;
+        try {
+            coalesce = ((BigDecimal) config.get("coalesce")).intValue();
+        } catch (Throwable t) {
+        }
+        try {
+            flapCount = ((BigDecimal) config.get("flapcount")).intValue();
+        } catch (Throwable t) {
+        }
+        try {
+            flapPeriod = ((BigDecimal) config.get("flapperiod")).intValue();
+        } catch (Throwable t) {
+        }
+        int exitDelay = 60;
+        int entryDelay = 30;
+        try {
+            exitDelay = ((BigDecimal) config.get("exitdelay")).intValue();
+        } catch (Throwable t) {
+        }
+        try {
+            entryDelay = ((BigDecimal) config.get("entrydelay")).intValue();
+        } catch (Throwable t) {
+        }
+        int clockDrift = 120;
+        try {
+            clockDrift = ((BigDecimal) config.get("clockdrift")).intValue();
+        } catch (Throwable t) {
+        }
+        int proxyPort = 0;
+        try {
+            proxyPort = ((BigDecimal) config.get("proxyport")).intValue();
+        } catch (Throwable t) {
+        }
+        String proxyAddress = (String) config.get("proxyaddress");
+        if (proxyAddress == null) {
+            proxyAddress = "127.0.0.1";
+        }
+        int heartbeatIdle = 30;
+        try {
+            heartbeatIdle = ((BigDecimal) config.get("heartbeat")).intValue();
+        } catch (Throwable t) {
+        }
+        boolean virtualThreads = Boolean.TRUE.equals(config.get("virtualthreads"));
+        coalescer = new NX584Coalescer(this, scheduler, coalesce, flapCount, flapPeriod * 1000L);
 
         // create & start panel interface
         try {
             logger.info(
                     "starting nx584 interface at port " + port + " with baudrate " + baud + " and " + zones + " zones");
             nx584 = new NX584(port, baud);
-            nx584.connect();
-            nx584.addSecurityPanelListener(new NX584Events(this));
+            nx584.setVirtualThreads(virtualThreads);
             nx584Commands = new NX584Commands(nx584);
-
-            // query panel status
-            for (int zone = 1; zone <= zones; zone++) {
-                nx584Commands.getZoneStatus(zone);
+            refreshCommands = new NX584Commands(nx584, true);
+            zoneModel = new NX584Zones(zones);
+            users = new NX584Users(nx584, refreshCommands, dataFile("users.properties"));
+            nx584.addSecurityPanelListener(users);
+            clock = new NX584Clock(this, nx584, clockDrift * 1000L);
+            nx584.addSecurityPanelListener(clock);
+            nx584.addSecurityPanelListener(new NX584Events(this, coalescer, users, clock, zoneModel));
+            history = new NX584History(this, zones);
+            nx584.addSecurityPanelListener(history);
+            timerWheel = new NX584TimerWheel(scheduler, 1000);
+            nx584.addSecurityPanelListener(
+                    new NX584Countdowns(this, timerWheel, exitDelay * 1000L, entryDelay * 1000L));
+            // ahead of the log sync, which must not have handled a sync reply when the layout checks it
+            layout = new NX584Layout(this, dataFile("layout.properties"), zones);
+            nx584.addSecurityPanelListener(layout);
+            if (layout.isComplete()) {
+                discoverChildren();
             }
-            for (int partition = 1; partition <= 8; partition++) {
-                nx584Commands.getPartitionStatus(partition);
+            stateStore = new NX584StateStore(this, dataFile("state.bin"), zones);
+            nx584.addSecurityPanelListener(stateStore);
+            if (logSyncInterval > 0) {
+                logSync = new NX584LogSync(nx584, refreshCommands, clock, dataFile("events.log"));
+                nx584.addSecurityPanelListener(logSync);
             }
-            nx584Commands.getSystemStatus();
+            nx584.addLinkListener(this);
+            nx584.connect();
+            heartbeat = new NX584Heartbeat(this, nx584, heartbeatIdle * 1000L);
+            heartbeat.start(scheduler);
+            users.start(scheduler);
+            history.start(scheduler);
+            if (proxyPort > 0) {
+                proxy = new NX584Proxy(nx584, new InetSocketAddress(proxyAddress, proxyPort));
+                try {
+                    proxy.start();
+                } catch (IOException ex) {
+                    logger.error("cannot start NX584 proxy at " + proxyAddress + ":" + proxyPort + ": "
+                            + ex.getMessage());
+                }
+            }
+
         } catch (Throwable t) {
             StringBuilder b = new StringBuilder();
             for (String s : NRSerialPort.getAvailableSerialPorts()) {
@@ -152,7 +303,106 @@ public class NX584Handler extends BaseThingHandler {
     @Override
     public void dispose() {
         logger.info("dispose nx584 handler, releasing serial port");
-        nx584.disconnect();
+        if (logSync != null) {
+            logSync.stop();
+        }
+        if (heartbeat != null) {
+            heartbeat.stop();
+        }
+        if (proxy != null) {
+            proxy.stop();
+        }
+        if (users != null) {
+            users.stop();
+        }
+        if (history != null) {
+            history.stop();
+        }
+        if (clock != null) {
+            clock.stop();
+        }
+        if (timerWheel != null) {
+            timerWheel.dispose();
+        }
+        if (coalescer != null) {
+            coalescer.dispose();
+        }
+        if (nx584 != null) {
+            nx584.disconnect();
+        }
+        // after disconnect, which stops the listeners
+        if (stateStore != null) {
+            stateStore.close();
+        }
+    }
+
+    @Override
+    public void linkStatusChanged(boolean up) {
+        if (!up) {
+            linkLost = true;
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, "no connection to panel");
+            panelStatusChanged(zoneHandlers, false);
+            panelStatusChanged(partitionHandlers, false);
+            return;
+        }
+        updateStatus(ThingStatus.ONLINE);
+        panelStatusChanged(zoneHandlers, true);
+        panelStatusChanged(partitionHandlers, true);
+        if (!refreshed) {
+            // first link up, or the full refresh did not complete before the link was lost
+            refresh();
+        } else if (linkLost) {
+            // catch up on changes missed while the link was down
+            refreshCommands.getSystemStatus();
+            refreshCommands.getPartionSnapshot();
+            for (int group = 0; group <= (zones - 1) / ZonesSnapshotView.ZONES; group++) {
+                refreshCommands.getZonesSnapshot(group);
+            }
+            if (logSync != null) {
+                logSync.start(scheduler, logSyncInterval);
+            }
+        }
+    }
+
+    /**
+     * Request status and name of all zones in use, status of all partitions
+     * and system status, and fetch the events logged by the panel while we
+     * were not listening. The refresh has completed once the panel answered
+     * every request; until then it is repeated when the link comes up.
+     */
+    private void refresh() {
+        List<CompletableFuture<byte[]>> replies = new ArrayList<>();
+        for (int zone : layout.getZones()) {
+            replies.add(getZoneStatus(zone));
+            replies.add(refreshCommands.getZoneName(zone));
+        }
+        for (int partition = 1; partition <= 8; partition++) {
+            replies.add(refreshCommands.getPartitionStatus(partition));
+        }
+        replies.add(refreshCommands.getSystemStatus());
+        CompletableFuture<?> answered[] = new CompletableFuture<?>[replies.size()];
+        for (int i = 0; i < answered.length; i++) {
+            // a zone the panel does not have is answered with a failure (0x1c)
+            answered[i] = replies.get(i).exceptionally(t -> {
+                if (t instanceof CompletionException) {
+                    t = t.getCause();
+                }
+                if (!(t instanceof NX584Exception)) {
+                    throw new CompletionException(t);
+                }
+                return null;
+            });
+        }
+        CompletableFuture.allOf(answered).whenComplete((r, t) -> {
+            if (t == null) {
+                refreshed = true;
+            } else {
+                logger.info("NX584: panel refresh incomplete, repeating it on reconnect: " + t.getMessage());
+            }
+        });
+        if (logSync != null) {
+            logSync.start(scheduler, logSyncInterval);
+        }
     }
 
     @Override
@@ -161,6 +411,258 @@ public class NX584Handler extends BaseThingHandler {
         super.updateState(channelID, state);
     }
 
+    /** Update channel of zone, e.g. status, on its zone thing if it has one and on the panel otherwise. */
+    void updateZone(int zone, String channel, State state) {
+        update(zoneHandlers, zoneStates, "zone", zone, channel, state);
+    }
+
+    /** Update channel of partition, e.g. armed, on its partition thing if it has one and on the panel otherwise. */
+    void updatePartition(int partition, String channel, State state) {
+        update(partitionHandlers, partitionStates, "partition", partition, channel, state);
+    }
+
+    private void update(AtomicReferenceArray<NX584ChildHandler> children, List<Map<String, State>> states,
+            String prefix, int number, String channel, State state) {
+        NX584ChildHandler child = null;
+        if (number >= 1 && number < children.length()) {
+            states.get(number).put(channel, state);
+            child = children.get(number);
+        }
+        if (child != null) {
+            child.update(channel, state);
+        } else {
+            super.updateState(prefix + number + "#" + channel, state);
+        }
+    }
+
+    /**
+     * Attach a zone or partition thing, called by its handler on initialization.
+     *
+     * @return False if its number is out of range
+     */
+    boolean attach(NX584ChildHandler child) {
+        AtomicReferenceArray<NX584ChildHandler> children = child instanceof NX584ZoneHandler ? zoneHandlers
+                : partitionHandlers;
+        if (child.getNumber() < 1 || child.getNumber() >= children.length()) {
+            return false;
+        }
+        children.set(child.getNumber(), child);
+        return true;
+    }
+
+    /**
+     * Publish the known states of a child that just attached and request the
+     * states not known yet. Requests of the startup refresh that are still
+     * waiting are not repeated, identical queries are merged.
+     */
+    void initialize(NX584ChildHandler child) {
+        Map<String, State> states = (child instanceof NX584ZoneHandler ? zoneStates : partitionStates)
+                .get(child.getNumber());
+        for (Map.Entry<String, State> e : states.entrySet()) {
+            child.update(e.getKey(), e.getValue());
+        }
+        if (refreshCommands == null) {
+            return;
+        }
+        if (child instanceof NX584ZoneHandler) {
+            if (!states.containsKey("status")) {
+                getZoneStatus(child.getNumber());
+            }
+            if (!states.containsKey("name")) {
+                refreshCommands.getZoneName(child.getNumber());
+            }
+        } else if (!states.containsKey("siren")) {
+            // siren is only set by partition status, not by partition snapshots
+            refreshCommands.getPartitionStatus(child.getNumber());
+        }
+    }
+
+    void detach(NX584ChildHandler child) {
+        AtomicReferenceArray<NX584ChildHandler> children = child instanceof NX584ZoneHandler ? zoneHandlers
+                : partitionHandlers;
+        if (child.getNumber() >= 1 && child.getNumber() < children.length()) {
+            children.compareAndSet(child.getNumber(), child, null);
+        }
+    }
+
+    private static void panelStatusChanged(AtomicReferenceArray<NX584ChildHandler> children, boolean online) {
+        for (int i = 1; i < children.length(); i++) {
+            NX584ChildHandler child = children.get(i);
+            if (child != null) {
+                child.panelStatusChanged(online);
+            }
+        }
+    }
+
+    /** Request status and name of zone, all of its channels are updated. */
+    void refreshZone(int zone) {
+        if (refreshCommands == null) {
+            return;
+        }
+        zoneModel.forget(zone);
+        getZoneStatus(zone);
+        refreshCommands.getZoneName(zone);
+    }
+
+    void refreshPartition(int partition) {
+        if (refreshCommands != null) {
+            refreshCommands.getPartitionStatus(partition);
+        }
+    }
+
+    /** Bypass zone or remove its bypass, unless it already is in that state. */
+    void bypassZone(int zone, boolean bypass) {
+        if (nx584Commands != null && zoneModel.isSet(NX584Zones.BYPASSED, zone) != bypass) {
+            logFailure("bypass", nx584Commands.bypassZone(zone));
+        }
+    }
+
+    /** Service that adds zone and partition things for this panel to the inbox, set by the handler factory. */
+    public void setDiscoveryService(NX584DiscoveryService discovery) {
+        this.discovery = discovery;
+    }
+
+    /** Report the zones and partitions in use to discovery, once the zone layout is known. */
+    public void discoverChildren() {
+        NX584DiscoveryService discovery = this.discovery;
+        if (discovery != null && layout != null && layout.isComplete()) {
+            discovery.discovered(layout.getZones(), layout.getPartitionMask());
+        }
+    }
+
+    /**
+     * Request status of all zones in use. Returns at once, the requests are
+     * queued without blocking and admitted with the refresh budget.
+     */
+    void refreshZones() {
+        for (int zone : layout.getZones()) {
+            getZoneStatus(zone);
+        }
+    }
+
+    /**
+     * Request status of zone with the refresh budget. A zone the panel does
+     * not answer, with a failure (0x1c) or not at all, counts as not in use
+     * for the zone layout.
+     */
+    private CompletableFuture<byte[]> getZoneStatus(int zone) {
+        return refreshCommands.getZoneStatus(zone).whenComplete((r, t) -> {
+            if (t instanceof CompletionException) {
+                t = t.getCause();
+            }
+            if (t instanceof NX584Exception || t instanceof TimeoutException) {
+                layout.zoneUnanswered(zone);
+            }
+        });
+    }
+
+    /** File in userdata/nx584 for data of this thing. */
+    private File dataFile(String name) {
+        return new File(ConfigConstants.getUserDataFolder() + File.separator + "nx584" + File.separator
+                + getThing().getUID().getId() + "-" + name);
+    }
+
+    /** Commands and requests for the panel of this thing, null if not initialized. */
+    public NX584Commands getCommands() {
+        return nx584Commands;
+    }
+
+    /** Last count frames exchanged with the panel, see {@link FrameRecorder#dump(int)}. */
+    public String dumpFrames(int count) {
+        return nx584 == null ? "" : nx584.getFrameRecorder().dump(count);
+    }
+
+    /** Shared copy of the decoded panel state, null if not initialized. */
+    public NX584StateStore getStateStore() {
+        return stateStore;
+    }
+
+    /** Zone and partition transitions, null if not initialized. */
+    public NX584History getHistory() {
+        return history;
+    }
+
+    /**
+     * Send a command sequence, e.g. "bypass 3 7 12, armStay 1 2".
+     *
+     * Steps are separated by commas. bypass takes zone numbers, disarm, armAway,
+     * armStay, autoArm and alarmOff take partition numbers (all partitions if none).
+     */
+    private void sequence(String spec) {
+        NX584CommandSequence sequence = nx584Commands.sequence(zoneModel);
+        try {
+            for (String step : spec.split(",")) {
+                String args[] = step.trim().split("\\s+");
+                int partitions = 0;
+                for (int i = 1; i < args.length; i++) {
+                    int n = Integer.parseInt(args[i]);
+                    if ("bypass".equals(args[0])) {
+                        sequence.bypassZone(n);
+                    } else if (n < 1 || n > 8) {
+                        throw new IllegalArgumentException("partition " + n);
+                    } else {
+                        partitions |= 1 << (n - 1);
+                    }
+                }
+                if (partitions == 0) {
+                    partitions = NX584Commands.ALL_PARTITIONS;
+                }
+                switch (args[0]) {
+                    case "bypass":
+                        break;
+                    case "disarm":
+                        sequence.disarm(partitions);
+                        break;
+                    case "armAway":
+                        sequence.armAwayMode(partitions);
+                        break;
+                    case "armStay":
+                        sequence.armStayMode(partitions);
+                        break;
+                    case "autoArm":
+                        sequence.initiateAutoArm(partitions);
+                        break;
+                    case "alarmOff":
+                        sequence.audibleAlarmOff(partitions);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown step '" + args[0] + "'");
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            logger.warn("NX584: invalid sequence '" + spec + "': " + e.getMessage());
+            return;
+        }
+        sequence.execute().thenAccept(steps -> {
+            for (NX584CommandSequence.Step step : steps) {
+                if (step.getOutcome() == NX584CommandSequence.Outcome.DONE
+                        || step.getOutcome() == NX584CommandSequence.Outcome.UNCHANGED) {
+                    logger.info("NX584: sequence step " + step);
+                } else {
+                    logger.warn("NX584: sequence step " + step);
+                }
+            }
+        });
+    }
+
+    private void logFailure(String command, CompletableFuture<?> result) {
+        result.whenComplete((r, t) -> {
+            if (t != null) {
+                logger.warn("NX584: command '" + command + "' failed: " + t.getMessage());
+            }
+        });
+    }
+
+    /** True if data is a log event requested by the log sync rather than a new event. */
+    boolean isLogSyncReply(byte data[]) {
+        return logSync != null && logSync.isSyncReply(data);
+    }
+
+    /** True if data is a log event the log sync has not stored before. */
+    boolean isNewLogSyncEntry(byte data[]) {
+        return logSync != null && logSync.isNew(data);
+    }
+
     @Override
     public void channelLinked(ChannelUID channelUID) {
         super.channelLinked(channelUID);
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.nx584.handler;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.openhab.binding.nx584.internal.panel.LatencyStats;
+import org.openhab.binding.nx584.internal.panel.NX584;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link NX584Heartbeat} probes an idle link with system status requests
+ * (0x28) and publishes the link quality.
+ *
+ * A heartbeat is sent only when no frame has been received for the idle
+ * threshold and nothing is waiting for transmission, so a busy link carries
+ * no extra traffic. Round trip times are taken from all requests answered by
+ * the panel, heartbeats keep them current while the link is idle. The
+ * dispatch latency of urgent messages is published along with them.
+ *
+ * @author Bernhard Boser - Initial contribution
+ */
+public class NX584Heartbeat {
+
+    private static final long CHECK_INTERVAL = 1000;
+
+    private Logger logger = LoggerFactory.getLogger(NX584Heartbeat.class);
+    private final NX584Handler handler;
+    private final NX584 nx584;
+    private final long idle;
+
+    // guarded by this
+    private ScheduledFuture<?> job;
+    private boolean outstanding;
+    private int missed;
+    private long published = -1;
+    private long urgentPublished = -1;
+
+    /**
+     * @param idle Milliseconds without traffic after which a heartbeat is sent, 0 to only publish link quality
+     */
+    public NX584Heartbeat(NX584Handler handler, NX584 nx584, long idle) {
+        this.handler = handler;
+        this.nx584 = nx584;
+        this.idle = idle;
+    }
+
+    public synchronized void start(ScheduledExecutorService scheduler) {
+        if (job != null) {
+            return;
+        }
+        handler.updateState("panel#missed_heartbeats", new DecimalType(missed));
+        job = scheduler.scheduleWithFixedDelay(() -> tick(), CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (job != null) {
+            job.cancel(false);
+            job = null;
+        }
+    }
+
+    private synchronized void tick() {
+        publishRoundTrip();
+        publishUrgentDispatch();
+        if (idle <= 0 || outstanding || !nx584.isLinkUp() || nx584.getIdleTime() < idle
+                || nx584.getPendingTransmits() > 0) {
+            return;
+        }
+        outstanding = true;
+        nx584.sendRefresh((byte) 0x28).whenComplete((r, t) -> completed(t));
+    }
+
+    private synchronized void completed(Throwable t) {
+        outstanding = false;
+        if (t == null) {
+            if (missed > 0) {
+                missed = 0;
+                handler.updateState("panel#missed_heartbeats", new DecimalType(missed));
+            }
+        } else if (nx584.isLinkUp()) {
+            missed++;
+            logger.warn("heartbeat " + missed + " missed: " + t.getMessage());
+            handler.updateState("panel#missed_heartbeats", new DecimalType(missed));
+        }
+    }
+
+    private void publishRoundTrip() {
+        LatencyStats stats = nx584.getRoundTripStats();
+        long total = stats.getTotal();
+        if (total == published) {
+            return;
+        }
+        published = total;
+        handler.updateState("panel#rtt_median", new DecimalType(stats.percentile(0.5)));
+        handler.updateState("panel#rtt_p95", new DecimalType(stats.percentile(0.95)));
+        handler.updateState("panel#rtt_max", new DecimalType(stats.percentile(1.0)));
+    }
+
+    private void publishUrgentDispatch() {
+        LatencyStats stats = nx584.getUrgentDispatchStats();
+        long total = stats.getTotal();
+        if (total == urgentPublished) {
+            return;
+        }
+        urgentPublished = total;
+        handler.updateState("panel#urgent_latency_p95", new DecimalType(stats.percentile(0.95)));
+        handler.updateState("panel#urgent_latency_max", new DecimalType(stats.percentile(1.0)));
+        handler.updateState("panel#urgent_slo_violations", new DecimalType(nx584.getUrgentDispatchViolations()));
+    }
+
+}
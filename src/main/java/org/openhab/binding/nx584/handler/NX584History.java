@@ -0,0 +1,354 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.nx584.handler;
+
+import java.util.Calendar;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.core.library.types.DateTimeType;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.openhab.binding.nx584.internal.panel.SecurityPanelListener;
+import org.openhab.binding.nx584.internal.panel.message.PartitionStatusView;
+import org.openhab.binding.nx584.internal.panel.message.ZoneStatusView;
+import org.openhab.binding.nx584.internal.panel.message.ZonesSnapshotView;
+
+/**
+ * The {@link NX584History} records transitions of zone and partition
+ * condition flags and answers aggregate queries (time open, number of
+ * transitions, last change) without relying on openHAB persistence.
+ *
+ * Only messages whose flags differ from the previous message of the same
+ * zone or partition are recorded. Zones snapshots (0x05) update the faulted,
+ * bypassed and alarm memory flags of the last recorded zone flags. Each zone
+ * and partition has a ring of CAPACITY entries, stored as pairs of longs
+ * (time, flags); the oldest entries are overwritten when the ring is full.
+ * The ring only serves the console listing: time open (armed) today, the
+ * number of transitions today and the last change are kept in running
+ * accumulators of the faulted (armed) flag, which start over at midnight, so
+ * they stay correct however often other flags change.
+ *
+ * The time open today of zones that are open is republished every
+ * PUBLISH_INTERVAL, and the daily counts of all zones at midnight, so they
+ * keep growing while a zone stays open and start over every day.
+ *
+ * @author Bernhard Boser - Initial contribution
+ */
+public class NX584History implements SecurityPanelListener {
+
+    /** Transitions kept per zone or partition. */
+    public static final int CAPACITY = 256;
+
+    public static final int PARTITIONS = 8;
+
+    // milliseconds between updates of the time open today of open zones
+    private static final long PUBLISH_INTERVAL = 60000;
+    // zone condition flags carried by zones snapshots
+    private static final long SNAPSHOT_FLAGS = ZoneStatusView.CONDITION_FAULTED | ZoneStatusView.CONDITION_BYPASSED
+            | ZoneStatusView.CONDITION_ALARM_MEMORY;
+
+    private final NX584Handler handler;
+    private final Series zones[];
+    private final Series partitions[] = new Series[PARTITIONS + 1];
+
+    // guarded by this
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> publishJob;
+    private ScheduledFuture<?> midnightJob;
+
+    // decoders, used by dispatcher thread only
+    private final ZoneStatusView zoneStatus = new ZoneStatusView();
+    private final ZonesSnapshotView zonesSnapshot = new ZonesSnapshotView();
+    private final PartitionStatusView partitionStatus = new PartitionStatusView();
+
+    /** Transitions of one zone or partition. */
+    private static class Series {
+        final long entries[] = new long[2 * CAPACITY];
+        int head;
+        int count;
+
+        // flag aggregated by the accumulators
+        final long mask;
+        // midnight of the day accumulated
+        long day;
+        // milliseconds set today in intervals that ended
+        long setToday;
+        // changes of mask today
+        int changesToday;
+        // start of the current set interval, 0 if cleared
+        long setSince;
+        // time of the last change of mask, and of the last change to set, 0 if unknown
+        long changed;
+        long lastSet;
+
+        Series(long mask) {
+            this.mask = mask;
+        }
+
+        /** Account for flags recorded at time, after previous flags (null for the first record). */
+        void accumulate(Long previous, long flags, long time) {
+            today(time);
+            boolean set = (flags & mask) != 0;
+            if (previous == null) {
+                setSince = set ? time : 0;
+                return;
+            }
+            if (((previous & mask) != 0) == set) {
+                return;
+            }
+            changesToday++;
+            changed = time;
+            if (set) {
+                setSince = time;
+                lastSet = time;
+            } else {
+                setToday += time - setSince;
+                setSince = 0;
+            }
+        }
+
+        /** Start the accumulators over if time is on a later day. */
+        void today(long time) {
+            long midnight = midnight(time);
+            if (midnight > day) {
+                day = midnight;
+                setToday = 0;
+                changesToday = 0;
+                if (setSince != 0) {
+                    setSince = midnight;
+                }
+            }
+        }
+
+        /** Milliseconds the flag was set today, up to now. */
+        long setToday(long now) {
+            today(now);
+            return setToday + (setSince != 0 && now > setSince ? now - setSince : 0);
+        }
+
+        int changesToday(long now) {
+            today(now);
+            return changesToday;
+        }
+
+        long time(int i) {
+            return entries[2 * ((head - count + i + CAPACITY) % CAPACITY)];
+        }
+
+        long flags(int i) {
+            return entries[2 * ((head - count + i + CAPACITY) % CAPACITY) + 1];
+        }
+    }
+
+    public NX584History(NX584Handler handler, int zones) {
+        this.handler = handler;
+        this.zones = new Series[zones + 1];
+        for (int zone = 1; zone <= zones; zone++) {
+            this.zones[zone] = new Series(ZoneStatusView.CONDITION_FAULTED);
+        }
+        for (int partition = 1; partition <= PARTITIONS; partition++) {
+            partitions[partition] = new Series(PartitionStatusView.CONDITION_ARMED);
+        }
+    }
+
+    /** Start updating the daily counts periodically and at midnight. */
+    public synchronized void start(ScheduledExecutorService scheduler) {
+        if (publishJob != null) {
+            return;
+        }
+        this.scheduler = scheduler;
+        publishJob = scheduler.scheduleWithFixedDelay(() -> publishOpen(), PUBLISH_INTERVAL, PUBLISH_INTERVAL,
+                TimeUnit.MILLISECONDS);
+        scheduleMidnight();
+    }
+
+    public synchronized void stop() {
+        if (publishJob != null) {
+            publishJob.cancel(false);
+            publishJob = null;
+        }
+        if (midnightJob != null) {
+            midnightJob.cancel(false);
+            midnightJob = null;
+        }
+    }
+
+    private synchronized void scheduleMidnight() {
+        long now = System.currentTimeMillis();
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(midnight(now));
+        c.add(Calendar.DAY_OF_MONTH, 1);
+        midnightJob = scheduler.schedule(() -> midnight(), c.getTimeInMillis() - now, TimeUnit.MILLISECONDS);
+    }
+
+    /** Start the daily counts of all zones over, then wait for the next midnight. */
+    private void midnight() {
+        long now = System.currentTimeMillis();
+        for (int zone = 1; zone < zones.length; zone++) {
+            if (get(zones, zone).count > 0) {
+                publishToday(zone, now);
+            }
+        }
+        synchronized (this) {
+            if (publishJob != null) {
+                scheduleMidnight();
+            }
+        }
+    }
+
+    /** Update the time open today of zones that are open. */
+    private void publishOpen() {
+        long now = System.currentTimeMillis();
+        for (int zone = 1; zone < zones.length; zone++) {
+            if ((lastFlags(zones, zone) & ZoneStatusView.CONDITION_FAULTED) != 0) {
+                handler.updateZone(zone, "open_today", new DecimalType(setToday(zones, zone, now) / 1000));
+            }
+        }
+    }
+
+    @Override
+    public void nx584message(int type, byte data[]) {
+        long now = System.currentTimeMillis();
+        if (type == 0x04 && zoneStatus.wrap(data)) {
+            zoneFlags(zoneStatus.getZone(), zoneStatus.getConditionFlags(), now);
+        } else if (type == 0x05 && zonesSnapshot.wrap(data)) {
+            int first = zonesSnapshot.getFirstZone();
+            for (int i = 0; i < ZonesSnapshotView.ZONES; i++) {
+                long flags = (zonesSnapshot.isFaulted(i) ? ZoneStatusView.CONDITION_FAULTED : 0)
+                        | (zonesSnapshot.isBypassed(i) ? ZoneStatusView.CONDITION_BYPASSED : 0)
+                        | (zonesSnapshot.isAlarmMemory(i) ? ZoneStatusView.CONDITION_ALARM_MEMORY : 0);
+                zoneFlags(first + i, (lastFlags(zones, first + i) & ~SNAPSHOT_FLAGS) | flags, now);
+            }
+        } else if (type == 0x06 && partitionStatus.wrap(data)) {
+            int partition = partitionStatus.getPartition();
+            if (record(partitions, partition, partitionStatus.getConditionFlags(), now)) {
+                long armed = lastSet(partitions, partition);
+                if (armed != 0) {
+                    handler.updatePartition(partition, "last_armed", dateTime(armed));
+                }
+            }
+        }
+    }
+
+    /** Record the condition flags of zone and publish its history if they changed. */
+    private void zoneFlags(int zone, long flags, long now) {
+        if (record(zones, zone, flags, now)) {
+            long last = lastChange(zones, zone);
+            if (last != 0) {
+                handler.updateZone(zone, "last_change", dateTime(last));
+            }
+            publishToday(zone, now);
+        }
+    }
+
+    private void publishToday(int zone, long now) {
+        handler.updateZone(zone, "open_today", new DecimalType(setToday(zones, zone, now) / 1000));
+        handler.updateZone(zone, "transitions_today", new DecimalType(changesToday(zones, zone, now)));
+    }
+
+    /**
+     * Record flags if they differ from the last recorded flags.
+     *
+     * @return True if a transition was recorded
+     */
+    private synchronized boolean record(Series series[], int index, long flags, long time) {
+        if (index < 1 || index >= series.length) {
+            return false;
+        }
+        Series s = series[index];
+        if (s.count > 0 && s.flags(s.count - 1) == flags) {
+            return false;
+        }
+        s.accumulate(s.count > 0 ? s.flags(s.count - 1) : null, flags, time);
+        s.entries[2 * s.head] = time;
+        s.entries[2 * s.head + 1] = flags;
+        s.head = (s.head + 1) % CAPACITY;
+        if (s.count < CAPACITY) {
+            s.count++;
+        }
+        return true;
+    }
+
+    /** Last recorded flags, 0 if none. */
+    private synchronized long lastFlags(Series series[], int index) {
+        Series s = get(series, index);
+        return s == null || s.count == 0 ? 0 : s.flags(s.count - 1);
+    }
+
+    /** Time of last change of the aggregated flag, 0 if unknown. */
+    private synchronized long lastChange(Series series[], int index) {
+        Series s = get(series, index);
+        return s == null ? 0 : s.changed;
+    }
+
+    /** Time the aggregated flag last changed to set, 0 if unknown. */
+    private synchronized long lastSet(Series series[], int index) {
+        Series s = get(series, index);
+        return s == null ? 0 : s.lastSet;
+    }
+
+    /** Milliseconds the aggregated flag was set today. */
+    private synchronized long setToday(Series series[], int index, long now) {
+        Series s = get(series, index);
+        return s == null ? 0 : s.setToday(now);
+    }
+
+    /** Number of changes of the aggregated flag today. */
+    private synchronized int changesToday(Series series[], int index, long now) {
+        Series s = get(series, index);
+        return s == null ? 0 : s.changesToday(now);
+    }
+
+    private static Series get(Series series[], int index) {
+        return index < 1 || index >= series.length ? null : series[index];
+    }
+
+    /** Console output for a zone. */
+    public String zoneReport(int zone) {
+        return report(zones, zone, "zone " + zone, "open");
+    }
+
+    /** Console output for a partition. */
+    public String partitionReport(int partition) {
+        return report(partitions, partition, "partition " + partition, "armed");
+    }
+
+    private synchronized String report(Series series[], int index, String name, String state) {
+        Series s = get(series, index);
+        if (s == null || s.count == 0) {
+            return name + ": no history";
+        }
+        long now = System.currentTimeMillis();
+        StringBuilder b = new StringBuilder();
+        b.append(String.format("%s: %s %d s today, %d transitions today, last change %s%n", name, state,
+                s.setToday(now) / 1000, s.changesToday(now),
+                s.changed == 0 ? "never" : String.format("%tc", s.changed)));
+        for (int i = Math.max(0, s.count - 20); i < s.count; i++) {
+            b.append(String.format("  %tF %<tT  flags 0x%012x%n", s.time(i), s.flags(i)));
+        }
+        return b.toString();
+    }
+
+    private static long midnight(long time) {
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(time);
+        c.set(Calendar.HOUR_OF_DAY, 0);
+        c.set(Calendar.MINUTE, 0);
+        c.set(Calendar.SECOND, 0);
+        c.set(Calendar.MILLISECOND, 0);
+        return c.getTimeInMillis();
+    }
+
+    private static DateTimeType dateTime(long time) {
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(time);
+        return new DateTimeType(c);
+    }
+
+}
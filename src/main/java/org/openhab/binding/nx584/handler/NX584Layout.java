@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.nx584.handler;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Properties;
+
+import org.openhab.binding.nx584.internal.panel.SecurityPanelListener;
+import org.openhab.binding.nx584.internal.panel.message.LogEventView;
+import org.openhab.binding.nx584.internal.panel.message.ZoneStatusView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link NX584Layout} learns which zones are programmed in the panel, their
+ * zone type flags and partition membership, and caches the result in a file.
+ *
+ * The layout is taken from the zone status replies (0x04) of the full refresh
+ * at startup, so learning it costs no extra traffic; zones that belong to no
+ * partition are not used, as are zones whose status request the panel fails
+ * or does not answer. Once every configured zone has reported, the layout
+ * is saved and later refreshes only query the zones in use. Zone status
+ * replies received later keep updating the layout. The cache is dropped when
+ * the panel logs the end of programming or of a download, live or, for
+ * programming while the binding was not running, in a log entry that the log
+ * sync fetches for the first time.
+ *
+ * @author Bernhard Boser - Initial contribution
+ */
+public class NX584Layout implements SecurityPanelListener {
+
+    // log event types that indicate changed programming
+    private static final int END_PROGRAM = 46;
+    private static final int END_DOWNLOAD = 48;
+
+    private Logger logger = LoggerFactory.getLogger(NX584Layout.class);
+    private final File file;
+    private final int maxZones;
+    private final NX584Handler handler;
+
+    // per zone, index 0 unused
+    private final int partitionMask[];
+    private final int typeFlags[];
+    private final boolean reported[];
+    private int reportedCount;
+    private boolean complete;
+    private int zones[] = new int[0];
+
+    // decoders, used by dispatcher thread only
+    private final ZoneStatusView zoneStatus = new ZoneStatusView();
+    private final LogEventView logEvent = new LogEventView();
+
+    /**
+     * @param file Cache file
+     * @param maxZones Number of zones to learn
+     */
+    public NX584Layout(NX584Handler handler, File file, int maxZones) {
+        this.handler = handler;
+        this.file = file;
+        this.maxZones = maxZones;
+        partitionMask = new int[maxZones + 1];
+        typeFlags = new int[maxZones + 1];
+        reported = new boolean[maxZones + 1];
+        load();
+    }
+
+    /** True if every configured zone has reported since the layout was last invalidated. */
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    /** Zones to refresh: the zones in use if the layout is complete, all configured zones otherwise. */
+    public synchronized int[] getZones() {
+        if (complete) {
+            return zones;
+        }
+        int all[] = new int[maxZones];
+        for (int i = 0; i < maxZones; i++) {
+            all[i] = i + 1;
+        }
+        return all;
+    }
+
+    /** Partitions with at least one zone in use, bit 0 for partition 1. */
+    public synchronized int getPartitionMask() {
+        int mask = 0;
+        for (int zone : zones) {
+            mask |= partitionMask[zone];
+        }
+        return mask;
+    }
+
+    /** Partitions of zone, bit 0 for partition 1, 0 if unused or unknown. */
+    public synchronized int getPartitionMask(int zone) {
+        return zone < 1 || zone > maxZones ? 0 : partitionMask[zone];
+    }
+
+    /** Zone type flags 1 ... 3 of zone, flags 1 in the low byte. */
+    public synchronized int getTypeFlags(int zone) {
+        return zone < 1 || zone > maxZones ? 0 : typeFlags[zone];
+    }
+
+    @Override
+    public void nx584message(int type, byte data[]) {
+        if (type == 0x04 && zoneStatus.wrap(data)) {
+            zoneReported(zoneStatus.getZone(), zoneStatus.getPartitionMask(), zoneStatus.getTypeFlags());
+        } else if (type == 0x0a && logEvent.wrap(data)) {
+            int event = logEvent.getEventType();
+            if (event != END_PROGRAM && event != END_DOWNLOAD) {
+                return;
+            }
+            if (!handler.isLogSyncReply(data)) {
+                logger.info("panel programming changed, relearning zone layout");
+            } else if (handler.isNewLogSyncEntry(data)) {
+                logger.info("panel programming changed while not connected, relearning zone layout");
+            } else {
+                return;
+            }
+            invalidate();
+            handler.refreshZones();
+        }
+    }
+
+    private synchronized void zoneReported(int zone, int mask, int flags) {
+        if (zone < 1 || zone > maxZones) {
+            return;
+        }
+        if (complete) {
+            changed(zone, mask, flags);
+            return;
+        }
+        partitionMask[zone] = mask;
+        typeFlags[zone] = flags;
+        reported(zone);
+    }
+
+    /**
+     * The panel failed (0x1c) or did not answer a zone status request, e.g.
+     * for a zone beyond the zones of the panel: the zone is taken as not in
+     * use unless it reported before. A zone status received later updates
+     * the layout as usual.
+     */
+    public synchronized void zoneUnanswered(int zone) {
+        if (zone < 1 || zone > maxZones || complete || reported[zone]) {
+            return;
+        }
+        partitionMask[zone] = 0;
+        typeFlags[zone] = 0;
+        reported(zone);
+    }
+
+    private void reported(int zone) {
+        if (!reported[zone]) {
+            reported[zone] = true;
+            reportedCount++;
+        }
+        if (reportedCount == maxZones) {
+            complete();
+            save();
+            handler.discoverChildren();
+        }
+    }
+
+    /** Merge a zone status received after the layout was complete. */
+    private void changed(int zone, int mask, int flags) {
+        if (partitionMask[zone] == mask && typeFlags[zone] == flags) {
+            return;
+        }
+        boolean inUse = partitionMask[zone] != 0;
+        partitionMask[zone] = mask;
+        typeFlags[zone] = flags;
+        logger.info("zone " + zone + " layout changed");
+        if (inUse != (mask != 0)) {
+            complete();
+            save();
+            handler.discoverChildren();
+        } else {
+            save();
+        }
+    }
+
+    private synchronized void invalidate() {
+        for (int zone = 1; zone <= maxZones; zone++) {
+            reported[zone] = false;
+        }
+        reportedCount = 0;
+        complete = false;
+        if (file.exists() && !file.delete()) {
+            logger.warn("cannot delete zone layout cache " + file);
+        }
+    }
+
+    private void complete() {
+        int n = 0;
+        for (int zone = 1; zone <= maxZones; zone++) {
+            if (partitionMask[zone] != 0) {
+                n++;
+            }
+        }
+        zones = new int[n];
+        n = 0;
+        for (int zone = 1; zone <= maxZones; zone++) {
+            if (partitionMask[zone] != 0) {
+                zones[n++] = zone;
+            }
+        }
+        complete = true;
+        logger.info("zone layout: " + n + " of " + maxZones + " zones in use");
+    }
+
+    private void save() {
+        Properties p = new Properties();
+        p.setProperty("zones", Integer.toString(maxZones));
+        for (int zone = 1; zone <= maxZones; zone++) {
+            p.setProperty("zone" + zone, partitionMask[zone] + "," + typeFlags[zone]);
+        }
+        file.getParentFile().mkdirs();
+        try (Writer w = new FileWriter(file)) {
+            p.store(w, "NX584 zone layout: partition mask, zone type flags");
+        } catch (IOException ex) {
+            logger.warn("cannot write zone layout cache " + file + ": " + ex.getMessage());
+        }
+    }
+
+    private synchronized void load() {
+        if (!file.exists()) {
+            return;
+        }
+        Properties p = new Properties();
+        try (Reader r = new FileReader(file)) {
+            p.load(r);
+            if (Integer.parseInt(p.getProperty("zones", "0")) != maxZones) {
+                // zones configuration changed
+                return;
+            }
+            for (int zone = 1; zone <= maxZones; zone++) {
+                String v[] = p.getProperty("zone" + zone).split(",");
+                partitionMask[zone] = Integer.parseInt(v[0]);
+                typeFlags[zone] = Integer.parseInt(v[1]);
+                reported[zone] = true;
+            }
+            reportedCount = maxZones;
+            complete();
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("cannot read zone layout cache " + file + ": " + ex.getMessage());
+            invalidate();
+        }
+    }
+
+}
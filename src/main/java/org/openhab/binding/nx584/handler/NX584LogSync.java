@@ -0,0 +1,266 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.nx584.handler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.binding.nx584.internal.panel.NX584;
+import org.openhab.binding.nx584.internal.panel.SecurityPanelListener;
+import org.openhab.binding.nx584.internal.panel.message.LogEventView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link NX584LogSync} downloads the event log kept by the panel with
+ * log event requests (0x2a) and appends new entries to a local file.
+ *
+ * The job issues at most one request per tick and only when the transmit
+ * queue is empty, so commands and status queries always go first. A request
+ * whose future fails (no response, NAK, refused), or completes without the
+ * matching log event reaching this listener within REPLY_TIMEOUT, is repeated
+ * on the next tick, up to MAX_RETRIES times.
+ * Live log events (0x0a) received while connected are stored by the same
+ * path, which deduplicates against the entry last stored for each log index.
+ * The walk ends at the first entry that is already stored.
+ *
+ * The panel log is a ring of the size reported in each log event message.
+ * The size is stored in the file too, so indexes wrap correctly from the
+ * first request after a restart; until a size is known they wrap at 256.
+ *
+ * @author Bernhard Boser - Initial contribution
+ */
+public class NX584LogSync implements SecurityPanelListener {
+
+    private static final int MAX_RETRIES = 3;
+    // milliseconds to wait for the log event after the request completed
+    private static final long REPLY_TIMEOUT = 5000;
+    // file line recording the log size
+    private static final String SIZE = "# log size ";
+
+    private Logger logger = LoggerFactory.getLogger(NX584LogSync.class);
+    private final NX584 nx584;
+    private final NX584Commands nx584Commands;
+    private final File file;
+    private final NX584Clock clock;
+    private final LogEventView logEvent = new LogEventView();
+
+    // last entry stored for each log index
+    private final Map<Integer, String> entries = new HashMap<>();
+    private int lastIndex = -1;
+    private int logSize = 0;
+
+    // sync state, guarded by this
+    private ScheduledFuture<?> job;
+    private int nextIndex = 0;
+    private int requestedIndex = -1;
+    // request for requestedIndex, null until sent
+    private CompletableFuture<byte[]> request;
+    // time tick first saw the request completed normally, 0 if not yet
+    private long completed;
+    private int remaining = 0;
+    private int retries = 0;
+
+    public NX584LogSync(NX584 nx584, NX584Commands nx584Commands, NX584Clock clock, File file) {
+        this.nx584 = nx584;
+        this.nx584Commands = nx584Commands;
+        this.clock = clock;
+        this.file = file;
+        load();
+    }
+
+    /**
+     * Start walking the panel log from the entry after the last one stored.
+     *
+     * @param scheduler Executor for the sync job
+     * @param interval Milliseconds between log event requests
+     */
+    public synchronized void start(ScheduledExecutorService scheduler, long interval) {
+        if (job != null) {
+            return;
+        }
+        nextIndex = wrap(lastIndex + 1);
+        requestedIndex = -1;
+        request = null;
+        remaining = -1; // unknown until the log size has been reported
+        job = scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        logger.info("log sync started, resuming after event " + lastIndex);
+    }
+
+    public synchronized void stop() {
+        if (job != null) {
+            job.cancel(false);
+            job = null;
+        }
+    }
+
+    /** True if data is the reply to the outstanding log event request. */
+    public synchronized boolean isSyncReply(byte data[]) {
+        return requestedIndex >= 0 && data.length > 1 && (data[1] & 0xff) == requestedIndex;
+    }
+
+    /**
+     * True if the log entry in data has not been stored yet. Called for
+     * replies before they are passed to this listener.
+     */
+    public synchronized boolean isNew(byte data[]) {
+        return data.length >= 10 && !entry(data[1] & 0xff, data).equals(entries.get(data[1] & 0xff));
+    }
+
+    /** Log index wrapped at the log size, at 256 while the size is unknown. */
+    private int wrap(int index) {
+        return logSize > 0 ? index % logSize : index & 0xff;
+    }
+
+    private synchronized void tick() {
+        if (request != null) {
+            if (!request.isDone()) {
+                // waiting for the response
+                return;
+            }
+            if (!request.isCompletedExceptionally()) {
+                // waiting for the reply to reach this listener
+                long now = System.currentTimeMillis();
+                if (completed == 0) {
+                    completed = now;
+                }
+                if (now - completed < REPLY_TIMEOUT) {
+                    return;
+                }
+            }
+            if (++retries > MAX_RETRIES) {
+                logger.warn("log sync: no reply for event " + requestedIndex + ", giving up");
+                finish();
+                return;
+            }
+            logger.debug("log sync: repeating request for event " + requestedIndex);
+            request = null;
+            completed = 0;
+        }
+        if (requestedIndex < 0) {
+            if (remaining == 0) {
+                finish();
+                return;
+            }
+            requestedIndex = nextIndex;
+            retries = 0;
+        }
+        // leave the link to regular traffic, the request is sent on a later tick
+        if (nx584.getPendingTransmits() > 0) {
+            return;
+        }
+        request = nx584Commands.getLogEvent(requestedIndex);
+        completed = 0;
+    }
+
+    private void finish() {
+        logger.info("log sync complete, last event " + lastIndex);
+        requestedIndex = -1;
+        request = null;
+        stop();
+    }
+
+    @Override
+    public void nx584message(int type, byte data[]) {
+        if (type != 0x0a || data.length < 10) {
+            return;
+        }
+        synchronized (this) {
+            int index = data[1] & 0xff;
+            int size = data[2] & 0xff;
+            if (size != logSize && size > 0) {
+                logSize = size;
+                append(SIZE + size);
+            }
+            boolean stored = store(index, data);
+            if (index != requestedIndex) {
+                return;
+            }
+            requestedIndex = -1;
+            request = null;
+            nextIndex = wrap(index + 1);
+            if (remaining < 0) {
+                remaining = logSize;
+            }
+            // an entry already on file means the rest was received live or in an earlier sync
+            remaining = stored ? remaining - 1 : 0;
+        }
+    }
+
+    /**
+     * Append entry to file unless it is already stored. The entry is followed
+     * by the event time corrected for the current panel clock offset, which is
+     * not compared.
+     *
+     * @return True if the entry was new
+     */
+    private boolean store(int index, byte data[]) {
+        String entry = entry(index, data);
+        if (entry.equals(entries.get(index))) {
+            return false;
+        }
+        entries.put(index, entry);
+        lastIndex = index;
+        append(logEvent.wrap(data) ? entry + String.format(" @ %tF %<tT", clock.correct(logEvent)) : entry);
+        return true;
+    }
+
+    private void append(String line) {
+        try (Writer w = new FileWriter(file, true)) {
+            w.write(line);
+            w.write('\n');
+        } catch (IOException ex) {
+            logger.warn("cannot write event log " + file + ": " + ex.getMessage());
+        }
+    }
+
+    private static String entry(int index, byte data[]) {
+        return String.format("%d %d %d %d %02d-%02d %02d:%02d %s", index, data[3] & 0xff, data[4] & 0xff,
+                data[5] & 0xff, data[6], data[7], data[8], data[9], NX584Events.eventTypeName(data[3]));
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            file.getParentFile().mkdirs();
+            return;
+        }
+        try (BufferedReader r = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.startsWith(SIZE)) {
+                    logSize = Integer.parseInt(line.substring(SIZE.length()).trim());
+                    continue;
+                }
+                int sp = line.indexOf(' ');
+                if (sp > 0) {
+                    lastIndex = Integer.parseInt(line.substring(0, sp));
+                    int at = line.indexOf(" @ ");
+                    entries.put(lastIndex, at < 0 ? line : line.substring(0, at));
+                }
+            }
+        } catch (IOException | NumberFormatException ex) {
+            logger.warn("cannot read event log " + file + ": " + ex.getMessage());
+        }
+    }
+
+}
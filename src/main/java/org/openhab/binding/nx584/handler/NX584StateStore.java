@@ -0,0 +1,269 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.nx584.handler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.openhab.binding.nx584.internal.panel.SecurityPanelListener;
+import org.openhab.binding.nx584.internal.panel.message.LogEventView;
+import org.openhab.binding.nx584.internal.panel.message.PartitionStatusView;
+import org.openhab.binding.nx584.internal.panel.message.SystemStatusView;
+import org.openhab.binding.nx584.internal.panel.message.ZoneStatusView;
+import org.openhab.binding.nx584.internal.panel.message.ZonesSnapshotView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link NX584StateStore} keeps the decoded panel state in a memory
+ * mapped file of fixed layout, so other processes on the gateway can read it
+ * without going through the openHAB event bus.
+ *
+ * All values are little endian. The header holds a sequence number that is odd
+ * while the state is being updated; readers copy the state and retry if the
+ * sequence number was odd or changed meanwhile (seqlock). Times are
+ * milliseconds since epoch, 0 if not yet received.
+ *
+ * The file is only resized if its size does not match the configured zones,
+ * so readers that keep it mapped across a restart of the binding are not cut
+ * off; the binding clears the previous state inside an update, with odd
+ * sequence number. Zones snapshots (0x05) update the faulted, bypassed and
+ * alarm memory bits of the zone condition flags.
+ *
+ * <pre>
+ * header      0  long magic "NX584ST1", int layout version, int zones, int partitions, int reserved,
+ *                long sequence, long time of last update
+ * system     64  long flags (system status bytes 2..7), int panel id, int reserved, long time
+ * log event  88  16 bytes last live log event message (0x0a), long time
+ * partitions 112 per partition: long condition flags (see PartitionStatusView), long time
+ * zones      240 per zone: int condition flags, int type flags, int partition mask, int reserved, long time
+ * </pre>
+ *
+ * @author Bernhard Boser - Initial contribution
+ */
+public class NX584StateStore implements SecurityPanelListener {
+
+    public static final long MAGIC = 0x315453343835584eL; // "NX584ST1" in little endian
+    public static final int VERSION = 1;
+    public static final int PARTITIONS = 8;
+
+    public static final int SEQUENCE = 24;
+    public static final int UPDATED = 32;
+    public static final int SYSTEM = 64;
+    public static final int LOG_EVENT = 88;
+    public static final int PARTITION = 112;
+    public static final int PARTITION_SIZE = 16;
+    public static final int ZONE = PARTITION + PARTITIONS * PARTITION_SIZE;
+    public static final int ZONE_SIZE = 24;
+
+    // zone condition flags carried by zones snapshots
+    private static final long SNAPSHOT_FLAGS = ZoneStatusView.CONDITION_FAULTED | ZoneStatusView.CONDITION_BYPASSED
+            | ZoneStatusView.CONDITION_ALARM_MEMORY;
+
+    private Logger logger = LoggerFactory.getLogger(NX584StateStore.class);
+    private final NX584Handler handler;
+    private final int zones;
+    private final int size;
+    private volatile MappedByteBuffer buffer;
+    private FileChannel channel;
+
+    // orders the plain stores to the mapped buffer, see fence()
+    private volatile int guard;
+
+    // decoders, used by dispatcher thread only
+    private final ZoneStatusView zoneStatus = new ZoneStatusView();
+    private final ZonesSnapshotView zonesSnapshot = new ZonesSnapshotView();
+    private final PartitionStatusView partitionStatus = new PartitionStatusView();
+    private final SystemStatusView systemStatus = new SystemStatusView();
+    private final LogEventView logEvent = new LogEventView();
+
+    public NX584StateStore(NX584Handler handler, File file, int zones) {
+        this.handler = handler;
+        this.zones = zones;
+        size = ZONE + zones * ZONE_SIZE;
+        file.getParentFile().mkdirs();
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            if (raf.length() != size) {
+                raf.setLength(size);
+            }
+            channel = raf.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            // odd also if the binding stopped during an update
+            long sequence = buffer.getLong(SEQUENCE) | 1;
+            buffer.putLong(SEQUENCE, sequence);
+            fence();
+            for (int i = 0; i < size; i += 8) {
+                if (i != SEQUENCE) {
+                    buffer.putLong(i, 0);
+                }
+            }
+            buffer.putInt(8, VERSION);
+            buffer.putInt(12, zones);
+            buffer.putInt(16, PARTITIONS);
+            buffer.putLong(0, MAGIC);
+            fence();
+            buffer.putLong(SEQUENCE, sequence + 1);
+        } catch (IOException ex) {
+            logger.warn("cannot create shared state file " + file + ": " + ex.getMessage());
+            buffer = null;
+            channel = null;
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the state to the file and release it. Call once the panel link is
+     * disconnected, so no message updates the state meanwhile.
+     */
+    public synchronized void close() {
+        MappedByteBuffer b = buffer;
+        if (b == null) {
+            return;
+        }
+        buffer = null;
+        b.force();
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            logger.warn("cannot close shared state file: " + ex.getMessage());
+        }
+        channel = null;
+    }
+
+    @Override
+    public void nx584message(int type, byte data[]) {
+        if (buffer == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        switch (type) {
+            case 0x04:
+                if (zoneStatus.wrap(data) && zoneStatus.getZone() >= 1 && zoneStatus.getZone() <= zones) {
+                    int offset = ZONE + (zoneStatus.getZone() - 1) * ZONE_SIZE;
+                    begin();
+                    buffer.putInt(offset, (int) zoneStatus.getConditionFlags());
+                    buffer.putInt(offset + 4, zoneStatus.getTypeFlags());
+                    buffer.putInt(offset + 8, zoneStatus.getPartitionMask());
+                    buffer.putLong(offset + 16, now);
+                    end(now);
+                }
+                break;
+            case 0x05:
+                if (zonesSnapshot.wrap(data)) {
+                    int first = zonesSnapshot.getFirstZone();
+                    begin();
+                    for (int i = 0; i < ZonesSnapshotView.ZONES && first + i <= zones; i++) {
+                        int offset = ZONE + (first + i - 1) * ZONE_SIZE;
+                        long flags = (zonesSnapshot.isFaulted(i) ? ZoneStatusView.CONDITION_FAULTED : 0)
+                                | (zonesSnapshot.isBypassed(i) ? ZoneStatusView.CONDITION_BYPASSED : 0)
+                                | (zonesSnapshot.isAlarmMemory(i) ? ZoneStatusView.CONDITION_ALARM_MEMORY : 0);
+                        buffer.putInt(offset, (int) ((buffer.getInt(offset) & ~SNAPSHOT_FLAGS) | flags));
+                        buffer.putLong(offset + 16, now);
+                    }
+                    end(now);
+                }
+                break;
+            case 0x06:
+                if (partitionStatus.wrap(data) && partitionStatus.getPartition() <= PARTITIONS) {
+                    int offset = PARTITION + (partitionStatus.getPartition() - 1) * PARTITION_SIZE;
+                    begin();
+                    buffer.putLong(offset, partitionStatus.getConditionFlags());
+                    buffer.putLong(offset + 8, now);
+                    end(now);
+                }
+                break;
+            case 0x08:
+                if (systemStatus.wrap(data)) {
+                    long flags = 0;
+                    for (int i = 2; i <= 7; i++) {
+                        flags |= (long) (data[i] & 0xff) << (8 * (i - 2));
+                    }
+                    begin();
+                    buffer.putLong(SYSTEM, flags);
+                    buffer.putInt(SYSTEM + 8, systemStatus.getPanelId());
+                    buffer.putLong(SYSTEM + 16, now);
+                    end(now);
+                }
+                break;
+            case 0x0a:
+                if (logEvent.wrap(data) && !handler.isLogSyncReply(data)) {
+                    begin();
+                    for (int i = 0; i < 16; i++) {
+                        buffer.put(LOG_EVENT + i, i < data.length ? data[i] : 0);
+                    }
+                    buffer.putLong(LOG_EVENT + 16, now);
+                    end(now);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Consistent copy of the state, laid out as the file.
+     *
+     * @return Little endian buffer, null if the file could not be created
+     */
+    public ByteBuffer snapshot() {
+        MappedByteBuffer buffer = this.buffer;
+        if (buffer == null) {
+            return null;
+        }
+        ByteBuffer src = buffer.duplicate();
+        byte copy[] = new byte[size];
+        while (true) {
+            long before = buffer.getLong(SEQUENCE);
+            if ((before & 1) == 0) {
+                fence();
+                src.position(0);
+                src.get(copy);
+                fence();
+                if (buffer.getLong(SEQUENCE) == before) {
+                    return ByteBuffer.wrap(copy).order(ByteOrder.LITTLE_ENDIAN);
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    private void begin() {
+        buffer.putLong(SEQUENCE, buffer.getLong(SEQUENCE) + 1);
+        fence();
+    }
+
+    private void end(long now) {
+        buffer.putLong(UPDATED, now);
+        fence();
+        buffer.putLong(SEQUENCE, buffer.getLong(SEQUENCE) + 1);
+    }
+
+    /**
+     * Keep stores to the mapped buffer from being reordered across this point:
+     * earlier accesses cannot move past the volatile write, later ones cannot
+     * move ahead of the volatile read.
+     */
+    private int fence() {
+        guard = 1;
+        return guard;
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.nx584.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link NX584TimerWheel} runs many short timers of the binding off one
+ * periodic job instead of one scheduler task each.
+ *
+ * Timers are kept in SLOTS buckets by expiry tick; timers further out than
+ * one revolution carry the number of remaining revolutions. Resolution is one
+ * tick. The periodic job runs only while timers are pending.
+ *
+ * @author Bernhard Boser - Initial contribution
+ */
+public class NX584TimerWheel {
+
+    private static final int SLOTS = 64;
+
+    private Logger logger = LoggerFactory.getLogger(NX584TimerWheel.class);
+    private final ScheduledExecutorService scheduler;
+    private final long tick;
+
+    // guarded by this
+    private final List<List<Timer>> slots = new ArrayList<>(SLOTS);
+    private int current;
+    private int pending;
+    private ScheduledFuture<?> job;
+
+    private static class Timer {
+        final Runnable task;
+        int rounds;
+
+        Timer(Runnable task, int rounds) {
+            this.task = task;
+            this.rounds = rounds;
+        }
+    }
+
+    /**
+     * @param tick Milliseconds per tick
+     */
+    public NX584TimerWheel(ScheduledExecutorService scheduler, long tick) {
+        this.scheduler = scheduler;
+        this.tick = tick;
+        for (int i = 0; i < SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Run task after the given number of ticks, at least one.
+     * Tasks run on the scheduler and must not block.
+     */
+    public synchronized void schedule(int ticks, Runnable task) {
+        ticks = Math.max(1, ticks);
+        slots.get((current + ticks) % SLOTS).add(new Timer(task, (ticks - 1) / SLOTS));
+        pending++;
+        if (job == null) {
+            job = scheduler.scheduleAtFixedRate(() -> advance(), tick, tick, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Drop all timers. */
+    public synchronized void dispose() {
+        for (List<Timer> slot : slots) {
+            slot.clear();
+        }
+        pending = 0;
+        stopJob();
+    }
+
+    private void advance() {
+        List<Timer> due = new ArrayList<>();
+        synchronized (this) {
+            current = (current + 1) % SLOTS;
+            List<Timer> slot = slots.get(current);
+            for (int i = slot.size() - 1; i >= 0; i--) {
+                Timer t = slot.get(i);
+                if (t.rounds-- == 0) {
+                    due.add(t);
+                    slot.remove(i);
+                }
+            }
+            pending -= due.size();
+        }
+        for (int i = due.size() - 1; i >= 0; i--) {
+            try {
+                due.get(i).task.run();
+            } catch (RuntimeException ex) {
+                logger.error("timer task failed", ex);
+            }
+        }
+        synchronized (this) {
+            if (pending == 0) {
+                stopJob();
+            }
+        }
+    }
+
+    private void stopJob() {
+        if (job != null) {
+            job.cancel(false);
+            job = null;
+        }
+    }
+
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.nx584.handler;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Properties;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.binding.nx584.internal.panel.NX584;
+import org.openhab.binding.nx584.internal.panel.SecurityPanelListener;
+import org.openhab.binding.nx584.internal.panel.message.UserInformationView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link NX584Users} keeps a directory of panel users for describing log
+ * events, e.g. "Closing by user 5 (Alice, master, partitions 1,2)".
+ *
+ * The panel stores no user names, so names are read from the cache file
+ * (user5.name=Alice), where they are entered by hand and take effect on the
+ * next start. Authority and
+ * partitions are learned from user information replies (0x12): the first
+ * time a log event names an unknown user, a request (0x33) is queued and sent
+ * by a background job once the transmit queue is empty. Replies are saved to
+ * the cache file and added to the user's description. Event descriptions are
+ * looked up in an array and never wait for the panel.
+ *
+ * @author Bernhard Boser - Initial contribution
+ */
+public class NX584Users implements SecurityPanelListener {
+
+    public static final int USERS = 256;
+
+    private static final long INTERVAL = 1000;
+
+    private Logger logger = LoggerFactory.getLogger(NX584Users.class);
+    private final NX584 nx584;
+    private final NX584Commands nx584Commands;
+    private final File file;
+
+    // per user, guarded by this
+    private final String names[] = new String[USERS];
+    private final int partitions[] = new int[USERS];
+    private final int authority[] = new int[USERS];
+    private final boolean known[] = new boolean[USERS];
+    private final boolean wanted[] = new boolean[USERS];
+    // descriptions, replaced as a whole so lookups need no lock
+    private volatile String labels[] = new String[USERS];
+
+    private ScheduledFuture<?> job;
+    private int requested = -1;
+
+    // decoder, used by dispatcher thread only
+    private final UserInformationView userInformation = new UserInformationView();
+
+    public NX584Users(NX584 nx584, NX584Commands nx584Commands, File file) {
+        this.nx584 = nx584;
+        this.nx584Commands = nx584Commands;
+        this.file = file;
+        load();
+    }
+
+    public synchronized void start(ScheduledExecutorService scheduler) {
+        if (job == null) {
+            job = scheduler.scheduleWithFixedDelay(() -> tick(), INTERVAL, INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void stop() {
+        if (job != null) {
+            job.cancel(false);
+            job = null;
+        }
+    }
+
+    /**
+     * Description of user, e.g. "user 5 (Alice, master, partitions 1,2)".
+     * Requests the user's information from the panel in the background if it
+     * is not known yet.
+     */
+    public String describe(int user) {
+        if (user < 0 || user >= USERS) {
+            return "user " + user;
+        }
+        String label = labels[user];
+        want(user);
+        return label;
+    }
+
+    @Override
+    public void nx584message(int type, byte data[]) {
+        if (type == 0x12 && userInformation.wrap(data)) {
+            learned(userInformation.getUser(), userInformation.getAuthority(), userInformation.getPartitionMask());
+        }
+    }
+
+    private synchronized void want(int user) {
+        if (!known[user]) {
+            wanted[user] = true;
+        }
+    }
+
+    private synchronized void learned(int user, int auth, int mask) {
+        if (user >= USERS) {
+            return;
+        }
+        if (user == requested) {
+            requested = -1;
+        }
+        wanted[user] = false;
+        if (known[user] && authority[user] == auth && partitions[user] == mask) {
+            return;
+        }
+        known[user] = true;
+        authority[user] = auth;
+        partitions[user] = mask;
+        updateLabel(user);
+        save();
+    }
+
+    /** Request one wanted user per tick, only while the panel link is otherwise idle. */
+    private synchronized void tick() {
+        if (requested >= 0 || nx584.getPendingTransmits() > 0) {
+            return;
+        }
+        for (int user = 1; user < USERS; user++) {
+            if (wanted[user]) {
+                final int u = user;
+                requested = user;
+                nx584Commands.getUserInformation(user).whenComplete((r, t) -> failed(u, t));
+                return;
+            }
+        }
+    }
+
+    private synchronized void failed(int user, Throwable t) {
+        if (t == null) {
+            return;
+        }
+        // e.g. user does not exist, ask again with the next event of the user
+        logger.debug("no information for user " + user + ": " + t.getMessage());
+        wanted[user] = false;
+        if (requested == user) {
+            requested = -1;
+        }
+    }
+
+    private void updateLabel(int user) {
+        String l[] = labels.clone();
+        l[user] = label(user);
+        labels = l;
+    }
+
+    private String label(int user) {
+        StringBuilder b = new StringBuilder();
+        if (names[user] != null) {
+            b.append(names[user]);
+        }
+        if (known[user]) {
+            if ((authority[user] & UserInformationView.AUTHORITY_OUTPUT) == 0
+                    && (authority[user] & UserInformationView.AUTHORITY_MASTER) != 0) {
+                b.append(b.length() > 0 ? ", " : "").append("master");
+            }
+            b.append(b.length() > 0 ? ", " : "").append(partitions[user] == 0 ? "no partitions" : "partitions ");
+            int n = b.length();
+            for (int partition = 1; partition <= 8; partition++) {
+                if ((partitions[user] & 1 << (partition - 1)) != 0) {
+                    b.append(b.length() > n ? "," : "").append(partition);
+                }
+            }
+        }
+        return b.length() == 0 ? "user " + user : "user " + user + " (" + b + ")";
+    }
+
+    private synchronized void load() {
+        Properties p = new Properties();
+        if (file.exists()) {
+            try (Reader r = new FileReader(file)) {
+                p.load(r);
+            } catch (IOException ex) {
+                logger.warn("cannot read user cache " + file + ": " + ex.getMessage());
+            }
+        }
+        String l[] = new String[USERS];
+        for (int user = 0; user < USERS; user++) {
+            names[user] = p.getProperty("user" + user + ".name");
+            try {
+                String mask = p.getProperty("user" + user + ".partitions");
+                if (mask != null) {
+                    partitions[user] = Integer.parseInt(mask);
+                    authority[user] = Integer.parseInt(p.getProperty("user" + user + ".authority", "0"));
+                    known[user] = true;
+                }
+            } catch (NumberFormatException ex) {
+                logger.warn("invalid entry for user " + user + " in " + file);
+            }
+            l[user] = label(user);
+        }
+        labels = l;
+    }
+
+    private void save() {
+        // reread to keep names edited while running
+        Properties p = new Properties();
+        if (file.exists()) {
+            try (Reader r = new FileReader(file)) {
+                p.load(r);
+            } catch (IOException ex) {
+                logger.warn("cannot read user cache " + file + ": " + ex.getMessage());
+            }
+        }
+        for (int user = 0; user < USERS; user++) {
+            if (known[user]) {
+                p.setProperty("user" + user + ".partitions", Integer.toString(partitions[user]));
+                p.setProperty("user" + user + ".authority", Integer.toString(authority[user]));
+            }
+        }
+        file.getParentFile().mkdirs();
+        try (Writer w = new FileWriter(file)) {
+            p.store(w, "NX584 users: add user<n>.name=<name> to name users in log events");
+        } catch (IOException ex) {
+            logger.warn("cannot write user cache " + file + ": " + ex.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.nx584.handler;
+
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.types.Command;
+import org.eclipse.smarthome.core.types.RefreshType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link NX584ZoneHandler} handles a zone thing of a panel bridge.
+ *
+ * @author Bernhard Boser - Initial contribution
+ */
+public class NX584ZoneHandler extends NX584ChildHandler {
+
+    private Logger logger = LoggerFactory.getLogger(NX584ZoneHandler.class);
+
+    public NX584ZoneHandler(Thing thing) {
+        super(thing);
+    }
+
+    @Override
+    public void handleCommand(ChannelUID channelUID, Command command) {
+        if (panel == null) {
+            return;
+        }
+        if (command instanceof RefreshType) {
+            refresh();
+        } else if ("bypassed".equals(channelUID.getId()) && command instanceof OnOffType) {
+            panel.bypassZone(number, command == OnOffType.ON);
+        } else {
+            logger.warn("NX584: unrecognized command '" + command + "' for " + channelUID + " (ignored)");
+        }
+    }
+
+    @Override
+    protected void refresh() {
+        panel.refreshZone(number);
+    }
+
+}
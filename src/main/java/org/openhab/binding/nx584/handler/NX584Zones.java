@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.nx584.handler;
+
+/**
+ * The {@link NX584Zones} keeps the condition of all zones as one bitset per
+ * condition flag, bit zone - 1 for each zone, sized to the configured number
+ * of zones (up to {@link #MAX_ZONES}).
+ *
+ * Updates report which bits changed, so channels are only updated for zones
+ * whose condition changed. Zone snapshots (0x05) replace 16 zones of a flag
+ * with one word operation, and aggregates over all zones cost one bit count
+ * per 64 zones.
+ *
+ * @author Bernhard Boser - Initial contribution
+ */
+public class NX584Zones {
+
+    // condition flags, in the order of zone condition flags 1 of the zone status message
+    public static final int FAULTED = 0;
+    public static final int TAMPERED = 1;
+    public static final int TROUBLE = 2;
+    public static final int BYPASSED = 3;
+    public static final int INHIBITED = 4;
+    public static final int LOW_BATTERY = 5;
+    public static final int SUPERVISION_LOST = 6;
+    public static final int ALARM_MEMORY = 7;
+    public static final int FLAGS = 8;
+
+    /** Zones of an NX-8E with expansion modules. */
+    public static final int MAX_ZONES = 192;
+
+    private final int zones;
+    // [flag][word], bit zone - 1
+    private final long bits[][];
+    // zones whose flag has been reported since startup
+    private final long known[][];
+
+    /**
+     * @param zones Number of zones
+     */
+    public NX584Zones(int zones) {
+        this.zones = zones;
+        int words = (zones + 63) / 64;
+        bits = new long[FLAGS][words];
+        known = new long[FLAGS][words];
+    }
+
+    public int getZones() {
+        return zones;
+    }
+
+    /**
+     * Set the flags of zone from a zone status message (0x04).
+     *
+     * @param conditionFlags Zone condition flags 1 and 2, flags 1 in the low byte
+     * @return Flags that changed or were not known before, bit f for flag f
+     */
+    public synchronized int update(int zone, long conditionFlags) {
+        if (zone < 1 || zone > zones) {
+            return (1 << FLAGS) - 1;
+        }
+        int word = (zone - 1) >> 6;
+        long bit = 1L << (zone - 1);
+        // alarm memory is bit 0 of condition flags 2
+        long flags = (conditionFlags & 0x7f) | ((conditionFlags >> 1) & 0x80);
+        int changed = 0;
+        for (int flag = 0; flag < FLAGS; flag++) {
+            long b = (flags >> flag & 1) != 0 ? bit : 0;
+            if ((known[flag][word] & bit) == 0 || (bits[flag][word] & bit) != b) {
+                changed |= 1 << flag;
+            }
+            bits[flag][word] = (bits[flag][word] & ~bit) | b;
+            known[flag][word] |= bit;
+        }
+        return changed;
+    }
+
+    /**
+     * Set one flag of up to 64 consecutive zones that do not cross a multiple
+     * of 64, e.g. the 16 zones of a zones snapshot message (0x05).
+     *
+     * @param first Number of the first zone, 1 for zone 1
+     * @param count Number of zones
+     * @param set Zones with the flag set, bit 0 for the first zone
+     * @return Zones whose flag changed or was not known before, bit 0 for the first zone
+     */
+    public synchronized long update(int flag, int first, int count, long set) {
+        if (first < 1 || first > zones) {
+            return count >= 64 ? -1L : (1L << count) - 1;
+        }
+        int word = (first - 1) >> 6;
+        int shift = (first - 1) & 63;
+        int n = Math.min(count, zones - first + 1);
+        long mask = (n >= 64 ? -1L : (1L << n) - 1) << shift;
+        long b = (set << shift) & mask;
+        long changed = ((bits[flag][word] ^ b) | ~known[flag][word]) & mask;
+        bits[flag][word] = (bits[flag][word] & ~mask) | b;
+        known[flag][word] |= mask;
+        // zones beyond the configured number are always reported as changed
+        long beyond = count >= 64 ? -1L << n : ((1L << count) - 1) & (-1L << n);
+        return (changed >>> shift) | (n < count ? beyond : 0);
+    }
+
+    /** Report all flags of zone as changed on its next update. */
+    public synchronized void forget(int zone) {
+        if (zone < 1 || zone > zones) {
+            return;
+        }
+        for (int flag = 0; flag < FLAGS; flag++) {
+            known[flag][(zone - 1) >> 6] &= ~(1L << (zone - 1));
+        }
+    }
+
+    public synchronized boolean isSet(int flag, int zone) {
+        return zone >= 1 && zone <= zones && (bits[flag][(zone - 1) >> 6] & 1L << (zone - 1)) != 0;
+    }
+
+    /** True if flag is set for any zone. */
+    public synchronized boolean any(int flag) {
+        for (long w : bits[flag]) {
+            if (w != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Number of zones with flag set. */
+    public synchronized int count(int flag) {
+        int n = 0;
+        for (long w : bits[flag]) {
+            n += Long.bitCount(w);
+        }
+        return n;
+    }
+
+    /** Zones with flag set, comma separated in ascending order. */
+    public synchronized String list(int flag) {
+        StringBuilder b = new StringBuilder();
+        for (int word = 0; word < bits[flag].length; word++) {
+            for (long w = bits[flag][word]; w != 0; w &= w - 1) {
+                if (b.length() > 0) {
+                    b.append(", ");
+                }
+                b.append(64 * word + Long.numberOfTrailingZeros(w) + 1);
+            }
+        }
+        return b.toString();
+    }
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.nx584.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.ThingRegistry;
+import org.eclipse.smarthome.io.console.Console;
+import org.eclipse.smarthome.io.console.extensions.AbstractConsoleCommandExtension;
+import org.openhab.binding.nx584.handler.NX584Handler;
+import org.openhab.binding.nx584.internal.panel.FrameRecorder;
+
+/**
+ * The {@link NX584ConsoleCommandExtension} provides the nx584 console command
+ * for inspecting the state kept by the binding.
+ *
+ * @author Bernhard Boser - Initial contribution
+ */
+public class NX584ConsoleCommandExtension extends AbstractConsoleCommandExtension {
+
+    private static final String HISTORY = "history";
+    private static final String FRAMES = "frames";
+
+    private ThingRegistry thingRegistry;
+
+    public NX584ConsoleCommandExtension() {
+        super("nx584", "Inspect NX584 security panels.");
+    }
+
+    @Override
+    public void execute(String[] args, Console console) {
+        if (args.length == 0) {
+            printUsage(console);
+            return;
+        }
+        switch (args[0]) {
+            case HISTORY:
+                history(args, console);
+                break;
+            case FRAMES:
+                frames(args, console);
+                break;
+            default:
+                printUsage(console);
+                break;
+        }
+    }
+
+    private void history(String[] args, Console console) {
+        if (args.length != 3) {
+            printUsage(console);
+            return;
+        }
+        int n;
+        try {
+            n = Integer.parseInt(args[2]);
+        } catch (NumberFormatException e) {
+            printUsage(console);
+            return;
+        }
+        for (NX584Handler handler : handlers()) {
+            console.println(handler.getThing().getUID().getAsString());
+            if (handler.getHistory() == null) {
+                console.println("  not initialized");
+            } else if ("zone".equals(args[1])) {
+                console.print(handler.getHistory().zoneReport(n));
+            } else if ("partition".equals(args[1])) {
+                console.print(handler.getHistory().partitionReport(n));
+            } else {
+                printUsage(console);
+                return;
+            }
+        }
+    }
+
+    private void frames(String[] args, Console console) {
+        int count = FrameRecorder.CAPACITY;
+        if (args.length > 1) {
+            try {
+                count = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                printUsage(console);
+                return;
+            }
+        }
+        for (NX584Handler handler : handlers()) {
+            console.println(handler.getThing().getUID().getAsString());
+            console.print(handler.dumpFrames(count));
+        }
+    }
+
+    private List<NX584Handler> handlers() {
+        List<NX584Handler> handlers = new ArrayList<>();
+        if (thingRegistry != null) {
+            for (Thing thing : thingRegistry.getAll()) {
+                if (thing.getHandler() instanceof NX584Handler) {
+                    handlers.add((NX584Handler) thing.getHandler());
+                }
+            }
+        }
+        return handlers;
+    }
+
+    @Override
+    public List<String> getUsages() {
+        return Arrays.asList(buildCommandUsage(HISTORY + " zone <number>", "transitions of a zone"),
+                buildCommandUsage(HISTORY + " partition <number>", "transitions of a partition"),
+                buildCommandUsage(FRAMES + " [<count>]", "last frames sent (>>) and received (<<)"));
+    }
+
+    protected void setThingRegistry(ThingRegistry thingRegistry) {
+        this.thingRegistry = thingRegistry;
+    }
+
+    protected void unsetThingRegistry(ThingRegistry thingRegistry) {
+        this.thingRegistry = null;
+    }
+
+}
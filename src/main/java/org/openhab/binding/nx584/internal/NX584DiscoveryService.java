@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.nx584.internal;
+
+import static org.openhab.binding.nx584.NX584BindingConstants.*;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.smarthome.config.discovery.AbstractDiscoveryService;
+import org.eclipse.smarthome.config.discovery.DiscoveryResultBuilder;
+import org.eclipse.smarthome.core.thing.ThingTypeUID;
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.openhab.binding.nx584.handler.NX584Handler;
+
+/**
+ * The {@link NX584DiscoveryService} adds a zone thing for every zone in use
+ * and a partition thing for every partition with zones to the inbox, once the
+ * panel bridge has learned its zone layout. Zones that belong to no partition
+ * get no thing.
+ *
+ * @author Bernhard Boser - Initial contribution
+ */
+public class NX584DiscoveryService extends AbstractDiscoveryService {
+
+    private static final Set<ThingTypeUID> SUPPORTED_THING_TYPES_UIDS = new HashSet<>(
+            Arrays.asList(THING_TYPE_ZONE, THING_TYPE_PARTITION));
+
+    private final NX584Handler panel;
+
+    public NX584DiscoveryService(NX584Handler panel) {
+        super(SUPPORTED_THING_TYPES_UIDS, 10, true);
+        this.panel = panel;
+    }
+
+    @Override
+    protected void startScan() {
+        panel.discoverChildren();
+    }
+
+    /**
+     * Report the zones and partitions of the panel.
+     *
+     * @param zones Zones in use
+     * @param partitionMask Partitions in use, bit 0 for partition 1
+     */
+    public void discovered(int zones[], int partitionMask) {
+        for (int zone : zones) {
+            discovered(THING_TYPE_ZONE, zone, "Zone " + zone);
+        }
+        for (int partition = 1; partition <= 8; partition++) {
+            if ((partitionMask & 1 << (partition - 1)) != 0) {
+                discovered(THING_TYPE_PARTITION, partition, "Partition " + partition);
+            }
+        }
+    }
+
+    private void discovered(ThingTypeUID type, int number, String label) {
+        ThingUID bridgeUID = panel.getThing().getUID();
+        ThingUID uid = new ThingUID(type, bridgeUID, type.getId() + number);
+        thingDiscovered(DiscoveryResultBuilder.create(uid).withBridge(bridgeUID)
+                .withProperty(CONFIG_NUMBER, new BigDecimal(number)).withLabel(label).build());
+    }
+
+}
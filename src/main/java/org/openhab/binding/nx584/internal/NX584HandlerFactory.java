@@ -7,26 +7,40 @@
  */
 package org.openhab.binding.nx584.internal;
 
-import static org.openhab.binding.nx584.NX584BindingConstants.THING_TYPE_SECURITY;
+import static org.openhab.binding.nx584.NX584BindingConstants.*;
 
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.smarthome.config.discovery.DiscoveryService;
+import org.eclipse.smarthome.core.thing.Bridge;
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingTypeUID;
+import org.eclipse.smarthome.core.thing.ThingUID;
 import org.eclipse.smarthome.core.thing.binding.BaseThingHandlerFactory;
 import org.eclipse.smarthome.core.thing.binding.ThingHandler;
 import org.openhab.binding.nx584.handler.NX584Handler;
+import org.openhab.binding.nx584.handler.NX584PartitionHandler;
+import org.openhab.binding.nx584.handler.NX584ZoneHandler;
+import org.osgi.framework.ServiceRegistration;
 
 /**
  * The {@link NX584HandlerFactory} is responsible for creating things and thing
- * handlers.
+ * handlers, and registers a discovery service for the zones and partitions of
+ * each panel.
  *
  * @author Bernhard Boser - Initial contribution
  */
 public class NX584HandlerFactory extends BaseThingHandlerFactory {
 
-    private final static Set<ThingTypeUID> SUPPORTED_THING_TYPES_UIDS = Collections.singleton(THING_TYPE_SECURITY);
+    private final static Set<ThingTypeUID> SUPPORTED_THING_TYPES_UIDS = new HashSet<>(
+            Arrays.asList(THING_TYPE_SECURITY, THING_TYPE_ZONE, THING_TYPE_PARTITION));
+
+    private final Map<ThingUID, ServiceRegistration<?>> discoveryServiceRegs = new HashMap<>();
 
     @Override
     public boolean supportsThingType(ThingTypeUID thingTypeUID) {
@@ -39,9 +53,32 @@ public class NX584HandlerFactory extends BaseThingHandlerFactory {
         ThingTypeUID thingTypeUID = thing.getThingTypeUID();
 
         if (thingTypeUID.equals(THING_TYPE_SECURITY)) {
-            return new NX584Handler(thing);
+            NX584Handler handler = new NX584Handler((Bridge) thing);
+            registerDiscoveryService(handler);
+            return handler;
+        } else if (thingTypeUID.equals(THING_TYPE_ZONE)) {
+            return new NX584ZoneHandler(thing);
+        } else if (thingTypeUID.equals(THING_TYPE_PARTITION)) {
+            return new NX584PartitionHandler(thing);
         }
 
         return null;
     }
+
+    @Override
+    protected synchronized void removeHandler(ThingHandler thingHandler) {
+        if (thingHandler instanceof NX584Handler) {
+            ServiceRegistration<?> reg = discoveryServiceRegs.remove(thingHandler.getThing().getUID());
+            if (reg != null) {
+                reg.unregister();
+            }
+        }
+    }
+
+    private synchronized void registerDiscoveryService(NX584Handler handler) {
+        NX584DiscoveryService discovery = new NX584DiscoveryService(handler);
+        handler.setDiscoveryService(discovery);
+        discoveryServiceRegs.put(handler.getThing().getUID(), bundleContext
+                .registerService(DiscoveryService.class.getName(), discovery, new Hashtable<String, Object>()));
+    }
 }
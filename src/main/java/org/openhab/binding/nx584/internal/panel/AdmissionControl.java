@@ -0,0 +1,101 @@
+package org.openhab.binding.nx584.internal.panel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the rate of messages sent to the panel, so a runaway rule cannot
+ * flood the transmit buffer.
+ *
+ * Messages are divided into classes, each with a token bucket: critical
+ * commands (keypad functions such as arm and disarm, zone bypass), other
+ * commands, queries, and the queries of the binding's own refreshes of the
+ * panel state (see {@link NX584#sendRefresh(byte...)}). Refreshes have a
+ * bucket of their own, so rule traffic cannot starve them nor they rule
+ * traffic. Messages beyond the rate of their class are refused. Refusals are logged with their reason at most once per
+ * LOG_INTERVAL.
+ */
+class AdmissionControl {
+
+    static final int CRITICAL = 0;
+    static final int COMMAND = 1;
+    static final int QUERY = 2;
+    static final int REFRESH = 3;
+
+    private static final String NAMES[] = { "critical", "command", "query", "refresh" };
+    private static final long LOG_INTERVAL = 10000;
+
+    private final Logger logger = LoggerFactory.getLogger(AdmissionControl.class);
+    // burst, messages per second; refreshes allow status and name of MAX_ZONES zones and more at once
+    private final TokenBucket buckets[] = { new TokenBucket(20, 1), new TokenBucket(20, 2),
+            new TokenBucket(256, 20), new TokenBucket(512, 20) };
+    private final long refused[] = new long[NAMES.length];
+    private long merged;
+    private long lastLog;
+
+    /** Token bucket, guarded by the lock of the enclosing AdmissionControl. */
+    private static class TokenBucket {
+        final double burst;
+        final double perNano;
+        double tokens;
+        long last = System.nanoTime();
+
+        TokenBucket(int burst, double perSecond) {
+            this.burst = burst;
+            this.perNano = perSecond / 1e9;
+            tokens = burst;
+        }
+
+        boolean take(int n) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - last) * perNano);
+            last = now;
+            if (tokens < n) {
+                return false;
+            }
+            tokens -= n;
+            return true;
+        }
+    }
+
+    /** Class of message msg, first byte is message type. */
+    static int classify(byte msg[]) {
+        int type = msg[0] & 63;
+        switch (type) {
+            case 0x3c: // primary keypad function with PIN
+            case 0x3d: // primary keypad function without PIN
+            case 0x3e: // secondary keypad function
+            case 0x3f: // zone bypass toggle
+                return CRITICAL;
+            default:
+                return Request.replyType(type) == 0x1d ? COMMAND : QUERY;
+        }
+    }
+
+    /**
+     * Take tokens for n messages of a class.
+     *
+     * @return True if the messages may be sent
+     */
+    synchronized boolean admit(int cls, int n) {
+        return buckets[cls].take(n);
+    }
+
+    /** Count a message refused for reason and log refusals now and then. */
+    synchronized void refused(int cls, String reason) {
+        refused[cls]++;
+        long now = System.currentTimeMillis();
+        if (now - lastLog >= LOG_INTERVAL) {
+            lastLog = now;
+            logger.warn("refused " + NAMES[cls] + " message: " + reason + " (refused since startup: critical "
+                    + refused[CRITICAL] + ", command " + refused[COMMAND] + ", query " + refused[QUERY] + ", refresh "
+                    + refused[REFRESH] + ", merged " + merged + " queries)");
+        }
+    }
+
+    /** Count a query merged with an identical waiting query. */
+    synchronized void merged() {
+        merged++;
+    }
+
+}
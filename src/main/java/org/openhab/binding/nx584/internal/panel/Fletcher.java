@@ -0,0 +1,43 @@
+package org.openhab.binding.nx584.internal.panel;
+
+/**
+ * Running fletcher sum of an NX584 message, fed one byte at a time by the
+ * frame encoder and decoder while they (un)stuff the data.
+ *
+ * The panel's sums are kept modulo 255 (0xff wraps to 0). Since messages are
+ * short, the accumulators are left unreduced while bytes are added and reduced
+ * once when the sum is read, which removes all branches from the byte loop.
+ */
+final class Fletcher {
+
+    private int sum1;
+    private int sum2;
+
+    /** Start a new message of the given length. */
+    void reset(int length) {
+        sum1 = length;
+        sum2 = length;
+    }
+
+    /**
+     * Add one message byte. At most 4000 bytes may be added between
+     * reset and reading the sum.
+     *
+     * @param b Byte value, 0 ... 255
+     */
+    void add(int b) {
+        sum1 += b;
+        sum2 += sum1;
+    }
+
+    /** First checksum byte, 0 ... 254. */
+    int getSum1() {
+        return sum1 % 255;
+    }
+
+    /** Second checksum byte, 0 ... 254. */
+    int getSum2() {
+        return sum2 % 255;
+    }
+
+}
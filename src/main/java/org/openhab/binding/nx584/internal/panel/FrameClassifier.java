@@ -0,0 +1,50 @@
+package org.openhab.binding.nx584.internal.panel;
+
+import org.openhab.binding.nx584.internal.panel.message.LogEventView;
+import org.openhab.binding.nx584.internal.panel.message.PartitionStatusView;
+
+/**
+ * Tells urgent messages, which are dispatched ahead of routine traffic, from
+ * routine ones. Urgent are log events (0x0a) of alarm, tamper, duress, fire and
+ * panic type and partition status messages (0x06) reporting siren, fire or tamper.
+ *
+ * Not thread safe, use one instance per thread.
+ */
+class FrameClassifier {
+
+    // log event types, see table in NX584Events
+    private static final boolean URGENT_EVENT[] = new boolean[128];
+
+    static {
+        int urgent[] = { 0, // Alarm
+                4, // Tamper
+                18, // Duress
+                19, // Manual fire
+                20, // Auxiliary 2 panic
+                22, // Panic
+                23, // Keypad tamper
+                24, // Control box tamper
+                32, // Siren tamper
+        };
+        for (int event : urgent) {
+            URGENT_EVENT[event] = true;
+        }
+    }
+
+    private final LogEventView logEvent = new LogEventView();
+    private final PartitionStatusView partitionStatus = new PartitionStatusView();
+
+    /** @param data Message received from panel, first byte is message type */
+    boolean isUrgent(byte data[]) {
+        switch (data[0] & 63) {
+            case 0x06:
+                return partitionStatus.wrap(data) && (partitionStatus.isSirenOn() || partitionStatus.isSteadySirenOn()
+                        || partitionStatus.isFire() || partitionStatus.isTamper());
+            case 0x0a:
+                return logEvent.wrap(data) && URGENT_EVENT[logEvent.getEventType()];
+            default:
+                return false;
+        }
+    }
+
+}
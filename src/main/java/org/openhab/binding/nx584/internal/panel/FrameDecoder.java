@@ -0,0 +1,124 @@
+package org.openhab.binding.nx584.internal.panel;
+
+import java.util.Arrays;
+
+/**
+ * Splits the byte stream received from the panel into messages.
+ *
+ * All bytes following the start character (length, data and fletcher sum)
+ * are unstuffed, the fletcher sum is accumulated while the data is
+ * unstuffed. A start character always begins a new frame, so a corrupted
+ * frame never swallows the one that follows it. Frames with a length outside
+ * 1..MAX_LENGTH or an invalid escape sequence are discarded.
+ */
+class FrameDecoder {
+
+    static final int START = 0x7e;
+    static final int ESCAPE = 0x7d;
+
+    /** Longest documented message is zone name (0x03) with 18 bytes. */
+    static final int MAX_LENGTH = 32;
+
+    enum Status {
+        /** Frame incomplete, feed more bytes. */
+        PENDING,
+        /** Complete message with valid fletcher sum, see getMessage. */
+        MESSAGE,
+        /** Complete message with bad fletcher sum, should be NAKed. */
+        CHECKSUM_ERROR,
+        /** Frame discarded (bad length, bad escape or interrupted by start character). */
+        DISCARDED
+    }
+
+    private enum State {
+        IDLE,
+        LENGTH,
+        DATA,
+        SUM1,
+        SUM2
+    }
+
+    private final byte buffer[] = new byte[MAX_LENGTH];
+    private final Fletcher fletcher = new Fletcher();
+    private State state = State.IDLE;
+    private boolean escaped;
+    private int length;
+    private int pos;
+    private int sum1;
+    private int sum2;
+
+    /**
+     * Process one byte received from the panel.
+     *
+     * @param b Byte value, 0 ... 255
+     * @return Status after processing b
+     */
+    Status put(int b) {
+        if (b == START) {
+            boolean interrupted = state != State.IDLE;
+            state = State.LENGTH;
+            escaped = false;
+            return interrupted ? Status.DISCARDED : Status.PENDING;
+        }
+        if (state == State.IDLE) {
+            // noise between frames
+            return Status.PENDING;
+        }
+        if (escaped) {
+            escaped = false;
+            if (b == 0x5e) {
+                b = START;
+            } else if (b == 0x5d) {
+                b = ESCAPE;
+            } else {
+                state = State.IDLE;
+                return Status.DISCARDED;
+            }
+        } else if (b == ESCAPE) {
+            escaped = true;
+            return Status.PENDING;
+        }
+        switch (state) {
+            case LENGTH:
+                if (b < 1 || b > MAX_LENGTH) {
+                    state = State.IDLE;
+                    return Status.DISCARDED;
+                }
+                length = b;
+                pos = 0;
+                fletcher.reset(length);
+                state = State.DATA;
+                return Status.PENDING;
+            case DATA:
+                buffer[pos++] = (byte) b;
+                fletcher.add(b);
+                if (pos == length) {
+                    state = State.SUM1;
+                }
+                return Status.PENDING;
+            case SUM1:
+                sum1 = b;
+                state = State.SUM2;
+                return Status.PENDING;
+            case SUM2:
+                sum2 = b;
+                state = State.IDLE;
+                return fletcher.getSum1() == sum1 && fletcher.getSum2() == sum2 ? Status.MESSAGE
+                        : Status.CHECKSUM_ERROR;
+            default:
+                state = State.IDLE;
+                return Status.DISCARDED;
+        }
+    }
+
+    /** Copy of the last complete message, first byte is the message type. */
+    byte[] getMessage() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /** Received fletcher sum of the last complete message, sum1 in the high byte. */
+    int getReceivedSum() {
+        return (sum1 << 8) | sum2;
+    }
+
+}
@@ -0,0 +1,114 @@
+package org.openhab.binding.nx584.internal.panel;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Flight recorder: always-on ring buffer of the last CAPACITY frames sent to
+ * and received from the panel, for diagnosing missed events without DEBUG
+ * logging.
+ *
+ * All storage is allocated up front in primitive arrays. Writers claim a slot
+ * with an atomic counter and publish it by storing the slot's sequence number
+ * after the data; readers skip slots that are being written or were
+ * overwritten while they were copied. Neither side takes a lock.
+ */
+public class FrameRecorder {
+
+    public static final int CAPACITY = 512;
+
+    public static final int SENT = 0;
+    public static final int RECEIVED = 1;
+
+    public static final int STATUS_OK = 0;
+    public static final int STATUS_CHECKSUM_ERROR = 1;
+    public static final int STATUS_DISCARDED = 2;
+
+    private static final String STATUS[] = { "", "  CHECKSUM ERROR", "  DISCARDED" };
+
+    private final AtomicLong next = new AtomicLong();
+    // sequence number of the frame in each slot, -1 while it is written
+    private final AtomicLongArray seq = new AtomicLongArray(CAPACITY);
+    private final long time[] = new long[CAPACITY];
+    // direction << 16 | status << 8 | length
+    private final int info[] = new int[CAPACITY];
+    private final byte data[] = new byte[CAPACITY * FrameDecoder.MAX_LENGTH];
+    // orders the plain stores and loads of the entry arrays, see fence()
+    private volatile int guard;
+
+    public FrameRecorder() {
+        for (int i = 0; i < CAPACITY; i++) {
+            seq.set(i, -1);
+        }
+    }
+
+    /**
+     * Record a frame.
+     *
+     * @param direction SENT or RECEIVED
+     * @param status STATUS_OK, STATUS_CHECKSUM_ERROR or STATUS_DISCARDED
+     * @param msg Message, first byte is message type, may be empty
+     */
+    void record(int direction, int status, byte msg[]) {
+        long n = next.getAndIncrement();
+        int slot = (int) (n % CAPACITY);
+        int length = Math.min(msg.length, FrameDecoder.MAX_LENGTH);
+        seq.set(slot, -1);
+        fence();
+        time[slot] = System.currentTimeMillis();
+        info[slot] = direction << 16 | status << 8 | length;
+        System.arraycopy(msg, 0, data, slot * FrameDecoder.MAX_LENGTH, length);
+        seq.set(slot, n);
+    }
+
+    /** Number of frames recorded since startup. */
+    public long getTotal() {
+        return next.get();
+    }
+
+    /**
+     * Recorded frames, oldest first, one per line: time, direction (&gt;&gt; sent,
+     * &lt;&lt; received), message bytes and checksum status.
+     *
+     * @param count Maximum number of frames, the most recent ones are returned
+     */
+    public String dump(int count) {
+        long last = next.get();
+        long first = Math.max(0, last - Math.min(count, CAPACITY));
+        StringBuilder b = new StringBuilder();
+        byte msg[] = new byte[FrameDecoder.MAX_LENGTH];
+        for (long n = first; n < last; n++) {
+            int slot = (int) (n % CAPACITY);
+            if (seq.get(slot) != n) {
+                continue;
+            }
+            long t = time[slot];
+            int i = info[slot];
+            int length = i & 0xff;
+            System.arraycopy(data, slot * FrameDecoder.MAX_LENGTH, msg, 0, length);
+            fence();
+            if (seq.get(slot) != n) {
+                // overwritten while copying
+                continue;
+            }
+            b.append(String.format("%tF %<tT.%<tL %s", t, (i >> 16) == SENT ? ">>" : "<<"));
+            for (int k = 0; k < length; k++) {
+                b.append(String.format(" %02x", msg[k] & 0xff));
+            }
+            b.append(STATUS[(i >> 8) & 0xff]).append(System.lineSeparator());
+        }
+        return b.toString();
+    }
+
+    /**
+     * Keep accesses to the entry arrays from being reordered across this
+     * point: earlier accesses cannot move past the volatile write, later ones
+     * cannot move ahead of the volatile read. The binding is built for Java
+     * 8, which has no VarHandle fences.
+     */
+    private int fence() {
+        guard = 1;
+        return guard;
+    }
+
+}
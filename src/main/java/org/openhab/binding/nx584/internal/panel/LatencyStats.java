@@ -0,0 +1,49 @@
+package org.openhab.binding.nx584.internal.panel;
+
+import java.util.Arrays;
+
+/**
+ * Rolling distribution of latencies, e.g. request round trip times.
+ * Keeps the last CAPACITY samples.
+ */
+public class LatencyStats {
+
+    public static final int CAPACITY = 256;
+
+    // microseconds, ring buffer
+    private final long samples[] = new long[CAPACITY];
+    private int head;
+    private int count;
+    private long total;
+
+    synchronized void add(long nanos) {
+        samples[head] = nanos / 1000;
+        head = (head + 1) % CAPACITY;
+        if (count < CAPACITY) {
+            count++;
+        }
+        total++;
+    }
+
+    /** Number of samples recorded since startup. */
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     * Latency below which fraction p of the kept samples lie.
+     *
+     * @param p Fraction, e.g. 0.95 for the 95th percentile
+     * @return Milliseconds, -1 if no samples are available
+     */
+    public synchronized double percentile(double p) {
+        if (count == 0) {
+            return -1;
+        }
+        long sorted[] = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int i = (int) Math.ceil(p * count) - 1;
+        return sorted[Math.max(0, Math.min(i, count - 1))] / 1000.0;
+    }
+
+}
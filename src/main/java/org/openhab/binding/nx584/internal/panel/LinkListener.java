@@ -0,0 +1,8 @@
+package org.openhab.binding.nx584.internal.panel;
+
+public interface LinkListener {
+
+    /** Serial link to panel was opened (true) or lost (false). */
+    public void linkStatusChanged(boolean up);
+
+}
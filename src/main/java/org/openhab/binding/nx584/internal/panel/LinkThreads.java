@@ -0,0 +1,114 @@
+package org.openhab.binding.nx584.internal.panel;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts and stops the threads of a panel link: supervisor, transmitter,
+ * receiver and dispatcher.
+ *
+ * Threads are virtual threads if requested and the JVM supports them (Java
+ * 21), platform threads otherwise. The binding is built for Java 8, so
+ * virtual threads are created through reflection. The link threads wait on
+ * java.util.concurrent locks rather than monitors, so a virtual thread is not
+ * pinned to its carrier while it waits; reading the serial port still pins
+ * it, since the serial driver blocks in native code.
+ */
+class LinkThreads {
+
+    // Thread.ofVirtual(), Thread.Builder.name(String), Thread.Builder.unstarted(Runnable); null if not supported
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method UNSTARTED;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method unstarted = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class);
+            unstarted = builder.getMethod("unstarted", Runnable.class);
+        } catch (ReflectiveOperationException ex) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        UNSTARTED = unstarted;
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(LinkThreads.class);
+    private volatile boolean virtual;
+
+    /** True if the JVM supports virtual threads. */
+    static boolean isVirtualSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /** Use virtual threads for threads started from now on, if supported. */
+    void setVirtual(boolean virtual) {
+        if (virtual && !isVirtualSupported()) {
+            logger.warn("virtual threads need Java 21, using platform threads");
+            virtual = false;
+        }
+        this.virtual = virtual;
+    }
+
+    boolean isVirtual() {
+        return virtual;
+    }
+
+    /** Start runnable on a new thread. */
+    Thread start(String name, Runnable runnable) {
+        Thread thread = null;
+        if (virtual) {
+            try {
+                thread = (Thread) UNSTARTED.invoke(NAME.invoke(OF_VIRTUAL.invoke(null), name), runnable);
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                // e.g. preview feature not enabled on Java 19 and 20
+                logger.warn("cannot create virtual thread, using platform threads: " + ex);
+                virtual = false;
+            }
+        }
+        if (thread == null) {
+            thread = new Thread(runnable, name);
+        }
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Interrupt threads and wait until they terminated.
+     *
+     * @param timeout Milliseconds to wait for each thread
+     * @return Threads still alive after the timeout
+     */
+    static List<Thread> stop(long timeout, Thread... threads) {
+        for (Thread t : threads) {
+            if (t != null && t != Thread.currentThread()) {
+                t.interrupt();
+            }
+        }
+        List<Thread> alive = new ArrayList<>();
+        for (Thread t : threads) {
+            if (t == null || t == Thread.currentThread()) {
+                continue;
+            }
+            try {
+                t.join(timeout);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            if (t.isAlive()) {
+                alive.add(t);
+            }
+        }
+        return alive;
+    }
+
+}
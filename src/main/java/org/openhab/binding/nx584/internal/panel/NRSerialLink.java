@@ -0,0 +1,57 @@
+package org.openhab.binding.nx584.internal.panel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import gnu.io.NRSerialPort;
+
+/**
+ * {@link SerialLink} over a serial port.
+ */
+public class NRSerialLink implements SerialLink {
+
+    private final String portName;
+    private final NRSerialPort serialPort;
+
+    public NRSerialLink(String portName, int baudRate) {
+        this.portName = portName;
+        serialPort = new NRSerialPort(portName, baudRate);
+    }
+
+    @Override
+    public void open() throws IOException {
+        serialPort.connect();
+        if (!serialPort.isConnected()) {
+            throw new IOException("cannot open " + portName);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (serialPort.isConnected()) {
+            serialPort.disconnect();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return serialPort.isConnected();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return serialPort.getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return serialPort.getOutputStream();
+    }
+
+    @Override
+    public String toString() {
+        return portName;
+    }
+
+}
@@ -1,299 +1,787 @@
 package org.openhab.binding.nx584.internal.panel;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
-import org.openhab.binding.nx584.internal.panel.util.BooleanLock;
-import org.openhab.binding.nx584.internal.panel.util.FIFO;
 import org.openhab.binding.nx584.internal.panel.util.ListenerApplicator;
 import org.openhab.binding.nx584.internal.panel.util.ListenerQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import gnu.io.NRSerialPort;
-
+/**
+ * Serial link to the NX584 interface of the panel.
+ *
+ * A supervisor thread watches the link and reopens the serial port with
+ * exponential backoff when the receiver or transmitter fails with an I/O error
+ * or the panel stops responding to requests. The transmit buffer, frame decoder
+ * and listeners are kept across reconnects.
+ *
+ * Received messages are passed to the listeners by a dispatcher thread, so
+ * slow listeners do not hold up the receiver. Urgent messages (see
+ * {@link FrameClassifier}) overtake routine messages waiting for dispatch.
+ *
+ * The threads can run as virtual threads, see {@link #setVirtualThreads(boolean)}.
+ * Closing the link stops the transmitter and receiver and waits for them to
+ * terminate; disconnecting also stops the supervisor and dispatcher.
+ */
 public class NX584 {
 
-    private final NRSerialPort serialPort;
+    // consecutive requests without response that mark the link dead
+    private static final int MAX_MISSED_RESPONSES = 3;
+    private static final long MIN_BACKOFF = 1000;
+    private static final long MAX_BACKOFF = 60000;
+    private static final long SUPERVISOR_INTERVAL = 1000;
+    // milliseconds to wait for a thread to terminate when stopping it
+    private static final long JOIN_TIMEOUT = 2000;
+    // frames and minimum milliseconds between automatic flight recorder dumps
+    private static final int AUTO_DUMP_FRAMES = 32;
+    private static final long AUTO_DUMP_INTERVAL = 60000;
+    private static final byte NO_DATA[] = new byte[0];
+    /** Milliseconds within which urgent messages should reach the listeners. */
+    public static final long URGENT_DISPATCH_SLO = 100;
+
+    private final SerialLink link;
     private final Logger logger = LoggerFactory.getLogger(NX584.class);
+    private final TransmitQueue transmitMessages = new TransmitQueue();
+    private final AdmissionControl admission = new AdmissionControl();
+    private final FrameDecoder decoder = new FrameDecoder();
+    private final ListenerQueue<SecurityPanelListener> listenerQueue = new ListenerQueue<>();
+    private final ListenerQueue<LinkListener> linkListeners = new ListenerQueue<>();
     private Transmitter transmitter;
     private Receiver receiver;
-    private final BooleanLock ackLock = new BooleanLock(true); // handshake
+    private Thread supervisorThread;
+    private final LinkThreads threads = new LinkThreads();
+    // guards connect, disconnect, open and close
+    private final ReentrantLock stateLock = new ReentrantLock();
+    private volatile boolean linkUp;
+    private volatile int missedResponses;
+    private volatile long lastReceived = System.currentTimeMillis();
+    private final LatencyStats roundTripStats = new LatencyStats();
+    private final Dispatcher dispatcher = new Dispatcher();
+    private final FrameRecorder recorder = new FrameRecorder();
+    private volatile long lastAutoDump;
 
     public NX584(String serialPortName, int baudRate) {
-        serialPort = new NRSerialPort(serialPortName, baudRate);
+        this(new NRSerialLink(serialPortName, baudRate));
+    }
+
+    /** @param link Connection to the panel, opened by {@link #connect()} */
+    public NX584(SerialLink link) {
+        this.link = link;
+    }
+
+    /**
+     * Run the link threads as virtual threads (Java 21 and later), platform
+     * threads otherwise. Call before {@link #connect()}.
+     */
+    public void setVirtualThreads(boolean virtual) {
+        threads.setVirtual(virtual);
+    }
+
+    /** True if the link threads run as virtual threads. */
+    public boolean isVirtualThreads() {
+        return threads.isVirtual();
+    }
+
+    /** Factory of the link threads, also used by the threads of other parts of the link, e.g. the proxy. */
+    LinkThreads getThreads() {
+        return threads;
     }
 
     // connect serial port to panel & start threads
     public void connect() {
-        if (serialPort.isConnected()) {
-            logger.info("NX584.connect: already connected");
-            return;
+        stateLock.lock();
+        try {
+            if (supervisorThread != null) {
+                logger.info("NX584.connect: already connected");
+                return;
+            }
+            dispatcher.start();
+            if (!open()) {
+                notifyLinkListeners(false);
+            }
+            supervisorThread = threads.start("NX584 supervisor", new Supervisor());
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    // release serial port & stop threads
+    public void disconnect() {
+        Thread t;
+        stateLock.lock();
+        try {
+            t = supervisorThread;
+            supervisorThread = null;
+        } finally {
+            stateLock.unlock();
+        }
+        LinkThreads.stop(JOIN_TIMEOUT, t);
+        close();
+        dispatcher.stop();
+        // fail requests still waiting for transmission
+        for (Request r : transmitMessages.clear()) {
+            r.future.completeExceptionally(new IOException("disconnected"));
         }
+    }
+
+    /** True if the serial link is open and the panel responds. */
+    public boolean isLinkUp() {
+        return linkUp;
+    }
+
+    /** Open serial port and start receiver and transmitter. */
+    private boolean open() {
+        stateLock.lock();
         try {
-            serialPort.connect();
-            receiver = new Receiver();
+            link.open();
+            missedResponses = 0;
             transmitter = new Transmitter();
+            receiver = new Receiver(transmitter);
             receiver.start();
             transmitter.start();
-            // TODO:
-            // delete next two statements
-            serialPort.getInputStream();
-            serialPort.getOutputStream();
+            linkUp = true;
         } catch (Exception ex) {
-            logger.error("cannot connect to security panel", ex);
+            logger.error("cannot connect to security panel: " + ex.getMessage());
+            close();
+            return false;
+        } finally {
+            stateLock.unlock();
         }
+        notifyLinkListeners(true);
+        return true;
     }
 
-    // release serial port & stop threads
-    public void disconnect() {
-        if (serialPort.isConnected()) {
-            serialPort.disconnect();
+    /**
+     * Close serial port, which ends the receiver, stop the transmitter and wait
+     * for both threads to terminate.
+     */
+    private void close() {
+        stateLock.lock();
+        try {
+            linkUp = false;
+            try {
+                if (link.isOpen()) {
+                    link.close();
+                }
+            } catch (Exception ex) {
+                logger.debug("error closing serial port: " + ex.getMessage());
+            }
+            for (Thread t : LinkThreads.stop(JOIN_TIMEOUT, transmitter == null ? null : transmitter.thread,
+                    receiver == null ? null : receiver.thread)) {
+                logger.warn("thread " + t.getName() + " did not terminate");
+            }
+            transmitter = null;
+            receiver = null;
+        } finally {
+            stateLock.unlock();
         }
-        transmitter.stop();
-        receiver.stop();
+    }
+
+    private void notifyLinkListeners(final boolean up) {
+        linkListeners.apply(new ListenerApplicator<LinkListener>() {
+            @Override
+            public void apply(LinkListener l) {
+                l.linkStatusChanged(up);
+            }
+        });
     }
 
     /**
      * Send message to panel. Asynchronous.
      *
-     * @param cmd NX584 message, e.g. sendCommand(0x25, 0) for Zone 1 Name Request
+     * The returned future completes with the panel's response: the reply message
+     * for requests (e.g. zone status 0x04 for zone status request 0x24) or the
+     * positive acknowledge (0x1d) for commands. It completes exceptionally with
+     * {@link NX584Exception} if the panel reports failure (0x1c), NAKs (0x1e) or
+     * rejects (0x1f) the message and with {@link TimeoutException} if no response
+     * arrives in time. Cancelling the future before it is transmitted removes the
+     * message from the transmit buffer; once transmitted, the next message is
+     * still only sent after the response or the timeout.
+     *
+     * Messages queued when the link fails are sent after it has been reopened,
+     * unless they are older than {@link Request#MAX_AGE} by then. New messages
+     * are rejected while the link is down.
+     *
+     * Messages pass {@link AdmissionControl}: messages beyond the rate of their
+     * class are rejected, and a query identical to one still waiting for
+     * transmission gets that query's response. Refreshes of the panel state by
+     * the binding itself are admitted separately, see {@link #sendRefresh(byte...)}.
+     * Keypad functions and zone bypass
+     * are sent ahead of other waiting messages. Callers are never blocked.
+     *
+     * Futures are completed on the receiver thread, use the async variants of
+     * CompletableFuture to run lengthy work elsewhere.
+     *
+     * @param cmd NX584 message, e.g. sendCommand(0x23, 0) for Zone 1 Name Request
+     * @return Response received from panel, first byte is message type
+     */
+    public CompletableFuture<byte[]> sendCommand(byte... msg) {
+        return sendCommand(Request.DEFAULT_TIMEOUT, msg);
+    }
+
+    /**
+     * Send message to panel. Asynchronous.
+     *
+     * @param timeout Milliseconds to wait for the response after transmission
+     * @param cmd NX584 message
+     * @return Response received from panel, see {@link #sendCommand(byte...)}
+     */
+    public CompletableFuture<byte[]> sendCommand(long timeout, byte... msg) {
+        return send(false, timeout, msg);
+    }
+
+    /**
+     * Send a message of the binding's own refresh of the panel state, e.g.
+     * the status and names of all zones after startup or a reconnect.
+     * Asynchronous.
+     *
+     * Refresh queries are admitted with a budget of their own, so a refresh
+     * of all zones neither exhausts nor is refused by the budget of queries
+     * sent by rules and users. Commands are admitted in their class as usual.
+     *
+     * @param msg NX584 message
+     * @return Response received from panel, see {@link #sendCommand(byte...)}
      */
-    public void sendCommand(byte... msg) {
-        transmitter.transmit(msg);
+    public CompletableFuture<byte[]> sendRefresh(byte... msg) {
+        return send(true, Request.DEFAULT_TIMEOUT, msg);
+    }
+
+    private CompletableFuture<byte[]> send(boolean refresh, long timeout, byte... msg) {
+        Request request = new Request(timeout, msg);
+        if (!linkUp) {
+            request.future.completeExceptionally(new IOException("not connected"));
+            return request.future;
+        }
+        int cls = AdmissionControl.classify(msg);
+        if (refresh && cls == AdmissionControl.QUERY) {
+            cls = AdmissionControl.REFRESH;
+        }
+        if (cls == AdmissionControl.QUERY || cls == AdmissionControl.REFRESH) {
+            Request waiting = transmitMessages.findWaiting(msg);
+            if (waiting != null) {
+                admission.merged();
+                // dependent future, so cancelling it leaves the waiting query alone
+                return waiting.future.thenApply(data -> data);
+            }
+        }
+        admit(cls, request);
+        return request.future;
+    }
+
+    /**
+     * Send messages to panel in order, without other messages in between.
+     * Asynchronous.
+     *
+     * A message is sent only if the panel accepted the message before it; once a
+     * message fails, the messages after it are cancelled without being sent.
+     *
+     * @param msgs NX584 messages
+     * @return Responses received from panel, one per message, see {@link #sendCommand(byte...)}
+     */
+    public List<CompletableFuture<byte[]>> sendSequence(byte[]... msgs) {
+        Request requests[] = new Request[msgs.length];
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>(msgs.length);
+        for (int i = 0; i < msgs.length; i++) {
+            requests[i] = new Request(Request.DEFAULT_TIMEOUT, msgs[i]);
+            if (i > 0) {
+                requests[i].previous = requests[i - 1];
+            }
+            futures.add(requests[i].future);
+        }
+        if (!linkUp) {
+            for (Request r : requests) {
+                r.future.completeExceptionally(new IOException("not connected"));
+            }
+            return futures;
+        }
+        // the sequence is admitted as a whole in the class of its most critical message
+        int cls = AdmissionControl.QUERY;
+        for (byte msg[] : msgs) {
+            cls = Math.min(cls, AdmissionControl.classify(msg));
+        }
+        admit(cls, requests);
+        return futures;
+    }
+
+    /** Queue requests if admission control and the transmit buffer accept them, fail them otherwise. */
+    private void admit(int cls, Request... requests) {
+        String reason = null;
+        if (!admission.admit(cls, requests.length)) {
+            reason = "rate limit exceeded";
+        } else if (!transmitMessages.add(cls == AdmissionControl.CRITICAL, requests)) {
+            reason = "transmit buffer full";
+        }
+        if (reason != null) {
+            admission.refused(cls, reason);
+            for (Request r : requests) {
+                r.future.completeExceptionally(new IOException(reason));
+            }
+        }
     }
 
-    public void setClock(Date date) {
+    public CompletableFuture<byte[]> setClock(Date date) {
         Calendar c = Calendar.getInstance();
         c.setTime(date);
-        transmitter.transmit((byte) 0x3b, (byte) (c.get(Calendar.YEAR) - 2000), (byte) (c.get(Calendar.MONTH) + 1),
+        return sendCommand((byte) 0x3b, (byte) (c.get(Calendar.YEAR) - 2000), (byte) (c.get(Calendar.MONTH) + 1),
                 (byte) (c.get(Calendar.DAY_OF_MONTH)), (byte) (c.get(Calendar.HOUR_OF_DAY)),
                 (byte) (c.get(Calendar.MINUTE)), (byte) (c.get(Calendar.DAY_OF_WEEK)));
     }
 
+    /** Number of messages waiting in the transmit buffer. */
+    public int getPendingTransmits() {
+        return transmitMessages.size();
+    }
+
+    /** Milliseconds since the last valid frame was received from the panel. */
+    public long getIdleTime() {
+        return System.currentTimeMillis() - lastReceived;
+    }
+
+    /** Round trip times of requests answered by the panel. */
+    public LatencyStats getRoundTripStats() {
+        return roundTripStats;
+    }
+
+    /** Last frames sent and received. */
+    public FrameRecorder getFrameRecorder() {
+        return recorder;
+    }
+
+    /** Log the most recent frames, at most once per AUTO_DUMP_INTERVAL. */
+    private void autoDump(String reason) {
+        long now = System.currentTimeMillis();
+        if (now - lastAutoDump < AUTO_DUMP_INTERVAL) {
+            return;
+        }
+        lastAutoDump = now;
+        logger.warn(reason + ", last frames:" + System.lineSeparator() + recorder.dump(AUTO_DUMP_FRAMES));
+    }
+
+    /** Time from reception of urgent messages until all listeners have processed them. */
+    public LatencyStats getUrgentDispatchStats() {
+        return dispatcher.urgentLatency;
+    }
+
+    /** Number of urgent messages that took longer than {@link #URGENT_DISPATCH_SLO} to dispatch. */
+    public long getUrgentDispatchViolations() {
+        return dispatcher.violations;
+    }
+
     public void addSecurityPanelListener(SecurityPanelListener listener) {
-        receiver.addSecurityPanelListener(listener);
+        listenerQueue.addListener(listener);
+    }
+
+    public void addLinkListener(LinkListener listener) {
+        linkListeners.addListener(listener);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // Supervisor
+    private class Supervisor implements Runnable {
+
+        @Override
+        public void run() {
+            long backoff = MIN_BACKOFF;
+            try {
+                while (true) {
+                    if (!linkUp) {
+                        if (open()) {
+                            logger.info("link to panel reopened");
+                            backoff = MIN_BACKOFF;
+                        } else {
+                            Thread.sleep(backoff);
+                            backoff = Math.min(2 * backoff, MAX_BACKOFF);
+                            continue;
+                        }
+                    }
+                    Thread.sleep(SUPERVISOR_INTERVAL);
+                    String reason = deadLinkReason();
+                    if (reason != null) {
+                        logger.warn("link to panel lost (" + reason + "), reconnecting");
+                        close();
+                        notifyLinkListeners(false);
+                    }
+                }
+            } catch (InterruptedException ie) {
+                logger.info("supervisor shutdown");
+            }
+        }
+
+        /** Reason why the link is considered dead, null if it is alive. */
+        private String deadLinkReason() {
+            Receiver r = receiver;
+            Transmitter t = transmitter;
+            if (r == null || !r.alive) {
+                return "receiver stopped";
+            }
+            if (t == null || !t.alive) {
+                return "transmitter stopped";
+            }
+            if (missedResponses >= MAX_MISSED_RESPONSES) {
+                return missedResponses + " requests without response";
+            }
+            return null;
+        }
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
     // Transmitter
     private class Transmitter implements Runnable {
 
-        private Thread transmitThread;
-        private final FIFO<byte[]> transmitMessages = new FIFO<>(100);
-
-        public Transmitter() {
+        private volatile Thread thread;
+        private final OutputStream out;
+        // serializes frames of transmitter and receiver (ACKs), guards fletcher
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private final Fletcher fletcher = new Fletcher();
+        private volatile boolean alive = true;
+        // request waiting for response from panel
+        private volatile Request pending;
+
+        public Transmitter() throws IOException {
+            out = link.getOutputStream();
         }
 
         public void start() {
             try {
-                transmitThread = new Thread(this, "NX584 transmitter");
-                transmitThread.start();
+                thread = threads.start("NX584 transmitter", this);
                 logger.info("transmitter started");
             } catch (Throwable t) {
                 logger.error("cannot start transmitter thread", t);
             }
         }
 
-        public void stop() {
-            // kick thread out of waiting for FIFO
-            transmitThread.interrupt();
-        }
-
         /**
-         * Send message to panel. Asynchronous, i.e. returns immediately.
-         * Messages are sent only when panel is ready (i.e. sent an
-         * acknowledgment to last message), but no checks are implemented that
-         * the message was correctly received and executed.
-         *
-         * @param data Data to be sent to panel. First byte is message type.
-         *            Fletcher sum is computed and appended by transmit.
+         * Complete the request waiting for a response if data is that response.
+         * Called by receiver for each message received.
          */
-        public void transmit(byte... msg) {
-            try {
-                transmitMessages.add(msg);
-            } catch (InterruptedException ie) {
-                logger.error("transmit buffer overflow", ie);
+        public void received(byte data[]) {
+            Request r = pending;
+            if (r != null && r.reply(data) && !r.response.isCompletedExceptionally()) {
+                roundTripStats.add(System.nanoTime() - r.sent);
             }
         }
 
         /**
-         * Transmit this message before any others from buffer.
-         * Used by receiver to send ACKs.
+         * Write one frame to the serial port.
+         * Locked since the receiver writes ACKs while the transmitter waits for a response.
          */
-        public void transmitFirst(byte... msg) {
+        public void write(byte... msg) throws IOException {
+            writeLock.lock();
             try {
-                transmitMessages.prepend(msg);
-            } catch (InterruptedException ie) {
-                logger.error("transmit_first buffer overflow", ie);
+                out.write(0x7e); // start character
+                writeStuffed(msg.length); // length byte
+                // data (including msg byte) ... beware of the 0x7e "stuffing" issue
+                fletcher.reset(msg.length);
+                for (int i = 0; i < msg.length; i++) {
+                    int b = msg[i] & 0xff;
+                    fletcher.add(b);
+                    writeStuffed(b);
+                }
+                // fletcher sum
+                writeStuffed(fletcher.getSum1());
+                writeStuffed(fletcher.getSum2());
+                out.flush();
+                recorder.record(FrameRecorder.SENT, FrameRecorder.STATUS_OK, msg);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        /** Write byte b, stuffed if it is a start (0x7e) or escape (0x7d) character. */
+        private void writeStuffed(int b) throws IOException {
+            if (b == FrameDecoder.START) {
+                out.write(FrameDecoder.ESCAPE);
+                b = 0x5e;
+            } else if (b == FrameDecoder.ESCAPE) {
+                out.write(FrameDecoder.ESCAPE);
+                b = 0x5d;
             }
+            out.write(b);
         }
 
+        /**
+         * Send messages from the transmit buffer to the panel.
+         * Messages are sent one at a time, the next message is sent only once
+         * the panel responded to the previous message or it timed out.
+         */
         @Override
         public void run() {
             try {
-                OutputStream out = serialPort.getOutputStream();
                 while (true) {
-                    ackLock.waitToSetFalse(5000);
-                    byte msg[] = transmitMessages.remove();
-                    out.write(0x7e); // start character
-                    out.write(msg.length); // length byte
-                    if (msg[0] != 0x1d) {
-                        // logger.debug("transmitter sending command to panel: " + bytes2string(msg));
+                    Request request = transmitMessages.remove();
+                    if (request.future.isDone()) {
+                        // cancelled while waiting in buffer
+                        continue;
                     }
-                    // data (including msg byte) ... beware of the 0x7e "stuffing" issue
-                    for (int i = 0; i < msg.length; i++) {
-                        byte b = msg[i];
-                        if (b == 0x7e) {
-                            out.write(0x7d);
-                            b = 0x5e;
-                        } else if (b == 0x7d) {
-                            out.write(0x7d);
-                            b = 0x5d;
-                        }
-                        out.write(b);
+                    if (request.previous != null && (request.previous.response.isCompletedExceptionally()
+                            || request.previous.future.isCancelled())) {
+                        // earlier message of sequence failed (its response fails first) or was cancelled
+                        request.future.cancel(false);
+                        continue;
                     }
-                    // fletcher sum
-                    byte f[] = fletcher(msg);
-                    out.write(f, 0, 2);
-                    out.flush();
-                    // no ack for acknowledge
-                    if (msg[0] == 0x1d) {
-                        ackLock.setValue(true);
+                    if (request.isStale()) {
+                        request.future.completeExceptionally(new TimeoutException(
+                                String.format("msg type 0x%02x not sent, link was down", request.msg[0])));
+                        continue;
                     }
+                    // logger.debug("transmitter sending command to panel: " + bytes2string(request.msg));
+                    pending = request;
+                    request.sent = System.nanoTime();
+                    write(request.msg);
+                    try {
+                        // the response, not the caller's future, which may have been cancelled meanwhile
+                        request.response.get(request.timeout, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException te) {
+                        missedResponses++;
+                        request.fail(new TimeoutException(
+                                String.format("no response from panel to msg type 0x%02x", request.msg[0])));
+                    } catch (ExecutionException ex) {
+                        // reported to caller through future
+                    }
+                    pending = null;
                 }
             } catch (InterruptedException | IOException ex) {
                 logger.info("transmitter shutdown");
             } catch (Throwable t) {
-                logger.error("transmitter terminated unexpectedly");
+                logger.error("transmitter terminated unexpectedly", t);
+            } finally {
+                alive = false;
+                Request r = pending;
+                if (r != null) {
+                    r.fail(new IOException("link to panel lost"));
+                }
             }
         }
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
-    // Receiver
-    private class Receiver implements Runnable {
-
-        private final ListenerQueue<SecurityPanelListener> listenerQueue = new ListenerQueue<>();
-
-        public Receiver() {
+    // Dispatcher
+    private class Dispatcher implements Runnable {
+
+        private final ArrayDeque<Frame> urgent = new ArrayDeque<>();
+        private final ArrayDeque<Frame> routine = new ArrayDeque<>();
+        private final LatencyStats urgentLatency = new LatencyStats();
+        private volatile long violations;
+        // guards urgent, routine and dispatchThread
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+        private Thread dispatchThread;
+
+        private class Frame {
+            final byte data[];
+            final long received = System.nanoTime();
+            final boolean urgent;
+
+            Frame(byte data[], boolean urgent) {
+                this.data = data;
+                this.urgent = urgent;
+            }
         }
 
         public void start() {
+            lock.lock();
             try {
-                Thread receiveThread = new Thread(this, "NX584 receiver");
-                receiveThread.start();
-                logger.info("receiver started");
-            } catch (Throwable t) {
-                logger.error("cannot start receiver thread", t);
+                if (dispatchThread == null) {
+                    dispatchThread = threads.start("NX584 dispatcher", this);
+                }
+            } finally {
+                lock.unlock();
             }
         }
 
+        /** Stop the dispatcher thread and wait for it to terminate. */
         public void stop() {
-            // no action needed ... closing serialPort stops receiver
+            Thread t;
+            lock.lock();
+            try {
+                t = dispatchThread;
+                dispatchThread = null;
+                urgent.clear();
+                routine.clear();
+            } finally {
+                lock.unlock();
+            }
+            LinkThreads.stop(JOIN_TIMEOUT, t);
+        }
+
+        /**
+         * Queue message for the listeners. Called by receiver.
+         *
+         * An urgent status message overtakes routine messages, so it replaces
+         * older routine status messages of the same zone or partition that are
+         * still waiting; otherwise the older state would be applied last.
+         */
+        public void dispatch(byte data[], boolean isUrgent) {
+            Frame frame = new Frame(data, isUrgent);
+            lock.lock();
+            try {
+                if (isUrgent) {
+                    if (isStatus(data)) {
+                        routine.removeIf(f -> f.data.length > 1 && (f.data[0] & 63) == (data[0] & 63)
+                                && f.data[1] == data[1]);
+                    }
+                    urgent.add(frame);
+                } else {
+                    routine.add(frame);
+                }
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
         }
 
-        public void addSecurityPanelListener(SecurityPanelListener listener) {
-            listenerQueue.addListener(listener);
+        /** Zone (0x04) or partition (0x06) status message, which carries the state of one zone or partition. */
+        private boolean isStatus(byte data[]) {
+            int type = data[0] & 63;
+            return (type == 0x04 || type == 0x06) && data.length > 1;
+        }
+
+        private Frame next() throws InterruptedException {
+            lock.lock();
+            try {
+                while (urgent.isEmpty() && routine.isEmpty()) {
+                    available.await();
+                }
+                return urgent.isEmpty() ? routine.remove() : urgent.remove();
+            } finally {
+                lock.unlock();
+            }
         }
 
         @Override
         public void run() {
             try {
-                InputStream is = serialPort.getInputStream();
                 while (true) {
-                    // look for start byte
-                    while ((is.read()) != 0x7e) {
-                        ;
-                    }
-                    // get length
-                    int len = is.read();
-                    // data, first byte is message type
-                    final byte data[] = new byte[len];
-                    for (int i = 0; i < len; i++) {
-                        int x = is.read();
-                        if (x == 0x7d) {
-                            x = is.read() == 0x5e ? 0x7e : 0x7d;
-                        }
-                        data[i] = (byte) x;
-                    }
-                    // logger.debug("receiver got message " + bytes2string(data));
-                    // check fletcher sum
-                    byte fletcher_sum[] = fletcher(data);
-                    byte sum1 = (byte) is.read();
-                    byte sum2 = (byte) is.read();
-                    boolean fletcher_ok = sum1 == fletcher_sum[0] && sum2 == fletcher_sum[1];
-                    if ((!fletcher_ok) && ((data[0] & 63) != 0x05)) { // zoneSnapshot has errors???
-                        logger.warn(
-                                String.format("receiver: fletcher error for msg len = %d: ", len) + bytes2string(data));
-                        logger.warn(String.format(
-                                "receiver: fletcher sum1 for msg type 0x%02x - expected 0x%02x got 0x%02x",
-                                data[0] & 63, fletcher_sum[0], sum1));
-                        logger.warn(String.format(
-                                "receiver: fletcher sum2 for msg type 0x%02x - expected 0x%02x got 0x%02x",
-                                data[0] & 63, fletcher_sum[1], sum2));
-                    }
-                    // acknowledge & handshake
-                    if ((data[0] & 128) != 0) {
-                        // byte ack_msg = 0x1d;
-                        byte ack_msg = (byte) (sum1 == fletcher_sum[0] && sum2 == fletcher_sum[1] ? 0x1d : 0x1e);
-                        ack_msg = 0x1d;
-                        transmitter.transmitFirst(ack_msg);
-                    }
-                    ackLock.setValue(true); // notify transmitter that receiver is ready
-                    // handle the message
-                    if (fletcher_ok) {
+                    final Frame frame = next();
+                    try {
                         listenerQueue.apply(new ListenerApplicator<SecurityPanelListener>() {
                             @Override
                             public void apply(final SecurityPanelListener l) {
-                                l.nx584message(data[0] & 63, data);
+                                l.nx584message(frame.data[0] & 63, frame.data);
                             }
                         });
+                    } catch (RuntimeException ex) {
+                        logger.error("listener failed on message " + bytes2string(frame.data), ex);
+                    }
+                    if (frame.urgent) {
+                        long latency = System.nanoTime() - frame.received;
+                        urgentLatency.add(latency);
+                        if (latency > URGENT_DISPATCH_SLO * 1000000) {
+                            violations++;
+                            logger.warn(String.format("urgent message dispatched after %d ms: %s", latency / 1000000,
+                                    bytes2string(frame.data)));
+                        }
                     }
                 }
-            } catch (IOException io) {
-                logger.info("receiver shutdown");
-            } catch (Throwable t) {
-                logger.error("receiver terminated unexpectedly", t);
+            } catch (InterruptedException ie) {
+                logger.info("dispatcher shutdown");
             }
-
         }
-
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
-    // Utility
+    // Receiver
+    private class Receiver implements Runnable {
+
+        private volatile boolean alive = true;
+        private volatile Thread thread;
+        private final FrameClassifier classifier = new FrameClassifier();
+        // transmitter of the same connection, for acknowledges and responses
+        private final Transmitter transmitter;
+
+        public Receiver(Transmitter transmitter) {
+            this.transmitter = transmitter;
+        }
 
-    private byte[] fletcher(byte data[]) {
-        // logger.debug("fletcher of " + bytes2string(data));
-        int len = data.length;
-        int sum1 = len, sum2 = len;
-        for (int i = 0; i < len; i++) {
-            int d = data[i] & 0xff;
-            // System.out.printf("d = %d = 0x%02x\n", d, d);
-            // System.out.printf("0xff - 0x%02x < 0x%02x ? %b\n", sum1, d, 255 - sum1 < d);
-            if (0xff - sum1 < d) {
-                sum1 = (sum1 + 1) & 0xff;
+        public void start() {
+            try {
+                thread = threads.start("NX584 receiver", this);
+                logger.info("receiver started");
+            } catch (Throwable t) {
+                logger.error("cannot start receiver thread", t);
             }
-            sum1 = (sum1 + d) & 0xff;
-            if (sum1 == 0xff) {
-                sum1 = 0;
+        }
+
+        @Override
+        public void run() {
+            try {
+                InputStream is = link.getInputStream();
+                byte buffer[] = new byte[64];
+                while (true) {
+                    int n = is.read(buffer);
+                    if (n < 0) {
+                        throw new EOFException("end of stream");
+                    }
+                    for (int i = 0; i < n; i++) {
+                        switch (decoder.put(buffer[i] & 0xff)) {
+                            case MESSAGE:
+                                byte msg[] = decoder.getMessage();
+                                recorder.record(FrameRecorder.RECEIVED, FrameRecorder.STATUS_OK, msg);
+                                received(msg);
+                                break;
+                            case CHECKSUM_ERROR:
+                                byte data[] = decoder.getMessage();
+                                recorder.record(FrameRecorder.RECEIVED, FrameRecorder.STATUS_CHECKSUM_ERROR, data);
+                                logger.warn(String.format("receiver: fletcher error, received 0x%04x for msg",
+                                        decoder.getReceivedSum()) + bytes2string(data));
+                                // ask panel to retransmit
+                                transmitter.write((byte) 0x1e);
+                                autoDump("checksum error");
+                                break;
+                            case DISCARDED:
+                                recorder.record(FrameRecorder.RECEIVED, FrameRecorder.STATUS_DISCARDED, NO_DATA);
+                                logger.debug("receiver: discarded corrupt frame");
+                                break;
+                            default:
+                                break;
+                        }
+                    }
+                }
+            } catch (IOException io) {
+                logger.info("receiver shutdown: " + io.getMessage());
+            } catch (Throwable t) {
+                logger.error("receiver terminated unexpectedly", t);
+            } finally {
+                alive = false;
             }
-            if (0xff - sum2 < sum1) {
-                sum2 = (sum2 + 1) & 0xff;
+
+        }
+
+        private void received(final byte data[]) throws IOException {
+            // logger.debug("receiver got message " + bytes2string(data));
+            // acknowledge & handshake
+            if ((data[0] & 128) != 0) {
+                transmitter.write((byte) 0x1d);
             }
-            sum2 = (sum2 + sum1) & 0xff;
-            if (sum2 == 0xff) {
-                sum2 = 0;
+            missedResponses = 0;
+            lastReceived = System.currentTimeMillis();
+            transmitter.received(data);
+            if ((data[0] & 63) == 0x1e) {
+                autoDump("negative acknowledge from panel");
             }
-            // logger.debug(String.format("0x%02x 0x%02x 0x%02x", d, sum1, sum2));
+            // handle the message
+            dispatcher.dispatch(data, classifier.isUrgent(data));
         }
-        return new byte[] { (byte) sum1, (byte) sum2 };
+
     }
 
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // Utility
+
     public static String bytes2string(byte msg[]) {
         StringBuilder b = new StringBuilder();
         for (int i = 0; i < msg.length; i++) {
@@ -0,0 +1,22 @@
+package org.openhab.binding.nx584.internal.panel;
+
+/**
+ * Panel failed or rejected a command or request.
+ */
+public class NX584Exception extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int messageType;
+
+    public NX584Exception(int messageType, String message) {
+        super(message);
+        this.messageType = messageType;
+    }
+
+    /** Type of the message received from the panel, e.g. 0x1c for command / request failed. */
+    public int getMessageType() {
+        return messageType;
+    }
+
+}
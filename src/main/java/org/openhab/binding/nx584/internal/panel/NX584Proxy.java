@@ -0,0 +1,324 @@
+package org.openhab.binding.nx584.internal.panel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * TCP server that shares the panel link with other NX584 clients, e.g.
+ * monitoring tools or the panel configuration software.
+ *
+ * Clients speak the NX584 binary protocol. Messages received from the panel
+ * are sent to all clients, with the acknowledge request bit cleared since
+ * {@link NX584} acknowledges them. Messages from clients are queued with
+ * {@link NX584#sendCommand(byte...)} like the binding's own; acknowledges
+ * (0x1d) and failures (0x1c, 0x1e, 0x1f) are returned only to the client whose
+ * message they answer, other replies reach the client with the broadcast.
+ * Acknowledges and NAKs sent by clients are dropped.
+ *
+ * All sockets are non-blocking and served by one selector thread. A client
+ * whose unsent data exceeds MAX_BACKLOG is disconnected rather than slowing
+ * down the panel link.
+ */
+public class NX584Proxy implements SecurityPanelListener, Runnable {
+
+    private static final int MAX_BACKLOG = 64 * 1024;
+
+    private final Logger logger = LoggerFactory.getLogger(NX584Proxy.class);
+    private final NX584 nx584;
+    private final InetSocketAddress address;
+    private final List<Client> clients = new ArrayList<>();
+    // clients with data to send, registered for OP_WRITE by the selector thread
+    private final List<Client> writable = new ArrayList<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(256);
+    private Selector selector;
+    private ServerSocketChannel server;
+    private volatile Thread thread;
+
+    private class Client {
+        final SocketChannel channel;
+        final FrameDecoder decoder = new FrameDecoder();
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        int backlog;
+        boolean closed;
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /** Queue frame for sending, called from any thread. */
+        void send(byte msg[]) {
+            byte frame[] = encode(msg);
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (backlog + frame.length > MAX_BACKLOG) {
+                    logger.warn("proxy client " + this + " too slow, disconnecting");
+                    closed = true;
+                } else {
+                    out.add(ByteBuffer.wrap(frame));
+                    backlog += frame.length;
+                }
+            }
+            synchronized (writable) {
+                writable.add(this);
+            }
+            selector.wakeup();
+        }
+
+        @Override
+        public String toString() {
+            try {
+                return String.valueOf(channel.getRemoteAddress());
+            } catch (IOException e) {
+                return "?";
+            }
+        }
+    }
+
+    /**
+     * @param nx584 Panel link, must have been connected
+     * @param address Address to listen on, e.g. loopback only
+     */
+    public NX584Proxy(NX584 nx584, InetSocketAddress address) {
+        this.nx584 = nx584;
+        this.address = address;
+    }
+
+    public synchronized void start() throws IOException {
+        if (thread != null) {
+            return;
+        }
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        nx584.addSecurityPanelListener(this);
+        thread = nx584.getThreads().start("NX584 proxy", this);
+        logger.info("NX584 proxy listening on " + address);
+    }
+
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        thread.interrupt();
+        selector.wakeup();
+        thread = null;
+    }
+
+    @Override
+    public void nx584message(int type, byte data[]) {
+        if (thread == null) {
+            return;
+        }
+        if (type >= 0x1c && type <= 0x1f) {
+            // routed to the client that sent the message, see submit
+            return;
+        }
+        byte msg[] = data.clone();
+        msg[0] &= 0x7f;
+        synchronized (clients) {
+            for (Client c : clients) {
+                c.send(msg);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                selector.select();
+                registerWrites();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Client client = (Client) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                read(client);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(client, key);
+                            }
+                        } catch (IOException ex) {
+                            close(client);
+                        }
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            logger.error("NX584 proxy failed", ex);
+        } finally {
+            synchronized (clients) {
+                for (Client c : new ArrayList<>(clients)) {
+                    close(c);
+                }
+            }
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException e) {
+            }
+            logger.info("NX584 proxy stopped");
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        Client client = new Client(channel);
+        channel.register(selector, SelectionKey.OP_READ, client);
+        synchronized (clients) {
+            clients.add(client);
+        }
+        logger.info("proxy client " + client + " connected");
+    }
+
+    private void registerWrites() {
+        List<Client> pending;
+        synchronized (writable) {
+            pending = new ArrayList<>(writable);
+            writable.clear();
+        }
+        for (Client c : pending) {
+            SelectionKey key = c.channel.keyFor(selector);
+            boolean closed;
+            synchronized (c) {
+                closed = c.closed;
+            }
+            if (closed || key == null || !key.isValid()) {
+                close(c);
+            } else {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    private void read(Client client) throws IOException {
+        readBuffer.clear();
+        int n = client.channel.read(readBuffer);
+        if (n < 0) {
+            throw new ClosedChannelException();
+        }
+        for (int i = 0; i < n; i++) {
+            switch (client.decoder.put(readBuffer.get(i) & 0xff)) {
+                case MESSAGE:
+                    submit(client, client.decoder.getMessage());
+                    break;
+                case CHECKSUM_ERROR:
+                    client.send(new byte[] { 0x1e });
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void write(Client client, SelectionKey key) throws IOException {
+        synchronized (client) {
+            while (!client.out.isEmpty()) {
+                ByteBuffer b = client.out.peek();
+                int n = client.channel.write(b);
+                client.backlog -= n;
+                if (b.hasRemaining()) {
+                    // socket buffer full, continue when writable again
+                    return;
+                }
+                client.out.remove();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /** Pass message from client to panel and return acknowledge or failure to the client. */
+    private void submit(final Client client, byte msg[]) {
+        int type = msg[0] & 63;
+        if (type >= 0x1c && type <= 0x1f) {
+            // the binding acknowledges messages from the panel
+            return;
+        }
+        nx584.sendCommand(msg).whenComplete((reply, t) -> {
+            if (t instanceof CompletionException && t.getCause() != null) {
+                t = t.getCause();
+            }
+            if (reply != null && (reply[0] & 63) >= 0x1c && (reply[0] & 63) <= 0x1f) {
+                client.send(reply);
+            } else if (t instanceof NX584Exception) {
+                client.send(new byte[] { (byte) ((NX584Exception) t).getMessageType() });
+            }
+        });
+    }
+
+    private void close(Client client) {
+        synchronized (client) {
+            client.closed = true;
+            client.out.clear();
+        }
+        synchronized (clients) {
+            if (!clients.remove(client)) {
+                return;
+            }
+        }
+        logger.info("proxy client " + client + " disconnected");
+        try {
+            client.channel.close();
+        } catch (IOException e) {
+        }
+    }
+
+    /** NX584 frame of msg: start character, stuffed length, data and fletcher sum. */
+    static byte[] encode(byte msg[]) {
+        ByteArrayOutputStream b = new ByteArrayOutputStream(2 * msg.length + 6);
+        Fletcher fletcher = new Fletcher();
+        fletcher.reset(msg.length);
+        b.write(FrameDecoder.START);
+        stuff(b, msg.length);
+        for (byte m : msg) {
+            fletcher.add(m & 0xff);
+            stuff(b, m & 0xff);
+        }
+        stuff(b, fletcher.getSum1());
+        stuff(b, fletcher.getSum2());
+        return b.toByteArray();
+    }
+
+    private static void stuff(ByteArrayOutputStream b, int v) {
+        if (v == FrameDecoder.START) {
+            b.write(FrameDecoder.ESCAPE);
+            v = 0x5e;
+        } else if (v == FrameDecoder.ESCAPE) {
+            b.write(FrameDecoder.ESCAPE);
+            v = 0x5d;
+        }
+        b.write(v);
+    }
+
+}
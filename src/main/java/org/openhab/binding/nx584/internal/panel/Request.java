@@ -0,0 +1,109 @@
+package org.openhab.binding.nx584.internal.panel;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Message queued for transmission to the panel together with the future
+ * that is completed by the panel's response.
+ */
+class Request {
+
+    /** Milliseconds to wait for the panel's response after transmission. */
+    static final long DEFAULT_TIMEOUT = 5000;
+
+    /** Milliseconds a message may wait for transmission, e.g. while the link is reopened. */
+    static final long MAX_AGE = 30000;
+
+    final byte msg[];
+    final long timeout;
+    final CompletableFuture<byte[]> future = new CompletableFuture<>();
+    // completed by the panel's response even if the caller cancelled future, so the
+    // transmitter keeps waiting for a late reply rather than crediting it to the next request
+    final CompletableFuture<byte[]> response = new CompletableFuture<>();
+    final long created = System.currentTimeMillis();
+    // System.nanoTime() at transmission
+    volatile long sent;
+    // message of the same sequence sent before this one, null if none
+    Request previous;
+
+    // message type that completes this request
+    private final int replyType;
+    // reply must carry the zone, partition, ... number sent in msg[1]
+    private final boolean matchIndex;
+
+    Request(long timeout, byte... msg) {
+        this.msg = msg;
+        this.timeout = timeout;
+        int type = msg[0] & 63;
+        replyType = replyType(type);
+        matchIndex = msg.length > 1 && replyType != 0x1d && type != 0x32;
+    }
+
+    /**
+     * Complete the request if data is its response.
+     *
+     * @param data Message received from panel, first byte is message type
+     * @return True if data completed this request
+     */
+    boolean reply(byte data[]) {
+        int type = data[0] & 63;
+        if (type == replyType && (!matchIndex || (data.length > 1 && data[1] == msg[1]))) {
+            if (!response.complete(data)) {
+                return false;
+            }
+            future.complete(data);
+            return true;
+        }
+        switch (type) {
+            case 0x1c:
+                return fail(new NX584Exception(type, "command / request failed"));
+            case 0x1e:
+                return fail(new NX584Exception(type, "negative acknowledge"));
+            case 0x1f:
+                return fail(new NX584Exception(type, "message rejected"));
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Fail the request, e.g. on timeout.
+     *
+     * @return True if the request had no response yet
+     */
+    boolean fail(Throwable t) {
+        if (!response.completeExceptionally(t)) {
+            return false;
+        }
+        future.completeExceptionally(t);
+        return true;
+    }
+
+    /** True if the message waited too long for transmission and should be dropped. */
+    boolean isStale() {
+        return System.currentTimeMillis() - created > MAX_AGE;
+    }
+
+    /** Type of the message the panel sends in response to a message of the given type. */
+    static int replyType(int type) {
+        switch (type) {
+            case 0x21: // interface configuration
+            case 0x23: // zone name
+            case 0x24: // zone status
+            case 0x25: // zones snapshot
+            case 0x26: // partition status
+            case 0x27: // partitions snapshot
+            case 0x28: // system status
+            case 0x2a: // log event
+                return type - 0x20;
+            case 0x30: // program data
+                return 0x10;
+            case 0x32: // user information with pin
+            case 0x33: // user information without pin
+                return 0x12;
+            default: // commands are acknowledged
+                return 0x1d;
+        }
+    }
+
+}
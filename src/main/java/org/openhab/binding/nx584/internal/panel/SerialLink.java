@@ -0,0 +1,26 @@
+package org.openhab.binding.nx584.internal.panel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Byte stream connection to the NX584 interface, normally a serial port
+ * (see {@link NRSerialLink}). Other implementations let {@link NX584} talk to
+ * a simulated panel, e.g. over piped streams.
+ */
+public interface SerialLink {
+
+    /** Open the connection, called again after close to reconnect. */
+    public void open() throws IOException;
+
+    /** Close the connection. Must make blocked reads of the input stream return or fail. */
+    public void close();
+
+    public boolean isOpen();
+
+    public InputStream getInputStream() throws IOException;
+
+    public OutputStream getOutputStream() throws IOException;
+
+}
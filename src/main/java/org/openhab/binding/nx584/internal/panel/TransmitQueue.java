@@ -0,0 +1,113 @@
+package org.openhab.binding.nx584.internal.panel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Transmit buffer with a reserved lane for security critical messages.
+ *
+ * Critical messages are sent before routine ones and are never refused for
+ * lack of space, so they wait at most for the message in flight and for
+ * critical messages queued before them. Routine messages are refused instead
+ * of blocking the caller once CAPACITY of them are waiting. The messages of a
+ * sequence are sent back to back in either lane.
+ */
+class TransmitQueue {
+
+    /**
+     * Routine messages that may wait for transmission, room for the bursts of
+     * all admission classes, e.g. a refresh of status and name of 192 zones
+     * while rules send queries.
+     */
+    static final int CAPACITY = 1024;
+
+    private final ArrayDeque<Request> critical = new ArrayDeque<>();
+    private final ArrayDeque<Request> routine = new ArrayDeque<>();
+    // last request handed to the transmitter
+    private Request last;
+    // guards the fields above, a lock rather than a monitor so waiting virtual threads are not pinned
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    /**
+     * Append requests to the critical or routine lane.
+     *
+     * @return False if the routine lane has no room for all requests, none are added then
+     */
+    boolean add(boolean urgent, Request... requests) {
+        lock.lock();
+        try {
+            if (!urgent && routine.size() + requests.length > CAPACITY) {
+                return false;
+            }
+            Collections.addAll(urgent ? critical : routine, requests);
+            available.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Next request to transmit, waits until there is one. */
+    Request remove() throws InterruptedException {
+        lock.lock();
+        try {
+            while (critical.isEmpty() && routine.isEmpty()) {
+                available.await();
+            }
+            if (routine.peek() != null && routine.peek().previous != null && routine.peek().previous == last) {
+                // finish sequence
+                last = routine.poll();
+            } else {
+                last = critical.isEmpty() ? routine.poll() : critical.poll();
+            }
+            return last;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Routine request with the same message that is still waiting, null if none. */
+    Request findWaiting(byte msg[]) {
+        lock.lock();
+        try {
+            for (Request r : routine) {
+                if (r.previous == null && !r.future.isDone() && Arrays.equals(r.msg, msg)) {
+                    return r;
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return critical.size() + routine.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Remove and return all waiting requests. */
+    List<Request> clear() {
+        lock.lock();
+        try {
+            List<Request> requests = new ArrayList<>(critical);
+            requests.addAll(routine);
+            critical.clear();
+            routine.clear();
+            return requests;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
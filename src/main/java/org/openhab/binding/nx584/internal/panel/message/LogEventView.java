@@ -0,0 +1,61 @@
+package org.openhab.binding.nx584.internal.panel.message;
+
+/**
+ * Log event message (0x0a).
+ */
+public class LogEventView extends MessageView {
+
+    public LogEventView() {
+        super(0x0a, 10);
+    }
+
+    /** Index of this event in the panel log, starting at 0. */
+    public int getEventNumber() {
+        return unsigned(1);
+    }
+
+    /** Number of events the panel log can hold. */
+    public int getLogSize() {
+        return unsigned(2);
+    }
+
+    /** Event type, 0 ... 127. */
+    public int getEventType() {
+        return data[3] & 0x7f;
+    }
+
+    public boolean isNonReporting() {
+        return bit(3, 0x80);
+    }
+
+    /** Zone, user or device number, depending on event type. */
+    public int getNumber() {
+        return unsigned(4);
+    }
+
+    /** Partition number, 1 for partition 1. */
+    public int getPartition() {
+        return unsigned(5) + 1;
+    }
+
+    /** Month, 1 ... 12. */
+    public int getMonth() {
+        return unsigned(6);
+    }
+
+    /** Day of month, 1 ... 31. */
+    public int getDay() {
+        return unsigned(7);
+    }
+
+    /** Hour, 0 ... 23. */
+    public int getHour() {
+        return unsigned(8);
+    }
+
+    /** Minute, 0 ... 59. */
+    public int getMinute() {
+        return unsigned(9);
+    }
+
+}
@@ -0,0 +1,58 @@
+package org.openhab.binding.nx584.internal.panel.message;
+
+/**
+ * Reusable view of a message received from the panel.
+ *
+ * A view holds no copy of the message: {@link #wrap(byte[])} points it at a
+ * message buffer and the accessors decode fields in place. Views are meant
+ * to be reused by one thread for successive messages of the same type, so
+ * decoding does not create objects per message.
+ */
+public abstract class MessageView {
+
+    private final int type;
+    private final int length;
+    protected byte data[];
+
+    /**
+     * @param type Message type, e.g. 0x04 for zone status
+     * @param length Minimum message length including the message type byte
+     */
+    protected MessageView(int type, int length) {
+        this.type = type;
+        this.length = length;
+    }
+
+    /**
+     * Point this view at msg.
+     *
+     * @param msg Message received from panel, first byte is message type
+     * @return True if msg is of the type and minimum length of this view
+     */
+    public boolean wrap(byte msg[]) {
+        if (msg == null || msg.length < length || (msg[0] & 63) != type) {
+            data = null;
+            return false;
+        }
+        data = msg;
+        return true;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    /** Panel requested an acknowledge for this message. */
+    public boolean isAckRequested() {
+        return (data[0] & 0x80) != 0;
+    }
+
+    protected final boolean bit(int index, int mask) {
+        return (data[index] & mask) != 0;
+    }
+
+    protected final int unsigned(int index) {
+        return data[index] & 0xff;
+    }
+
+}
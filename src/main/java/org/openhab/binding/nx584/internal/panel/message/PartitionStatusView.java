@@ -0,0 +1,212 @@
+package org.openhab.binding.nx584.internal.panel.message;
+
+/**
+ * Partition status message (0x06).
+ */
+public class PartitionStatusView extends MessageView {
+
+    /** Armed bit of {@link #getConditionFlags()}. */
+    public static final long CONDITION_ARMED = 0x40;
+
+    public PartitionStatusView() {
+        super(0x06, 9);
+    }
+
+    /** Partition number, 1 for partition 1. */
+    public int getPartition() {
+        return unsigned(1) + 1;
+    }
+
+    /** Number of the user who last armed or disarmed the partition. */
+    public int getLastUser() {
+        return unsigned(5);
+    }
+
+    /** Condition flags 1 ... 6, flags 1 in the low byte. */
+    public long getConditionFlags() {
+        return unsigned(2) | (unsigned(3) << 8) | (unsigned(4) << 16) | ((long) unsigned(6) << 24)
+                | ((long) unsigned(7) << 32) | ((long) unsigned(8) << 40);
+    }
+
+    // condition flags 1
+
+    public boolean isBypassCodeRequired() {
+        return bit(2, 0x01);
+    }
+
+    public boolean isFireTrouble() {
+        return bit(2, 0x02);
+    }
+
+    public boolean isFire() {
+        return bit(2, 0x04);
+    }
+
+    public boolean isPulsingBuzzer() {
+        return bit(2, 0x08);
+    }
+
+    public boolean isTLMFaultMemory() {
+        return bit(2, 0x10);
+    }
+
+    public boolean isArmed() {
+        return bit(2, 0x40);
+    }
+
+    public boolean isInstant() {
+        return bit(2, 0x80);
+    }
+
+    // condition flags 2
+
+    public boolean isPreviousAlarm() {
+        return bit(3, 0x01);
+    }
+
+    public boolean isSirenOn() {
+        return bit(3, 0x02);
+    }
+
+    public boolean isSteadySirenOn() {
+        return bit(3, 0x04);
+    }
+
+    public boolean isAlarmMemory() {
+        return bit(3, 0x08);
+    }
+
+    public boolean isTamper() {
+        return bit(3, 0x10);
+    }
+
+    public boolean isCancelCommandEntered() {
+        return bit(3, 0x20);
+    }
+
+    public boolean isCodeEntered() {
+        return bit(3, 0x40);
+    }
+
+    public boolean isCancelPending() {
+        return bit(3, 0x80);
+    }
+
+    // condition flags 3
+
+    public boolean isSilentExitEnabled() {
+        return bit(4, 0x02);
+    }
+
+    /** Entryguard (stay mode). */
+    public boolean isEntryGuard() {
+        return bit(4, 0x04);
+    }
+
+    public boolean isChimeMode() {
+        return bit(4, 0x08);
+    }
+
+    public boolean isEntry() {
+        return bit(4, 0x10);
+    }
+
+    public boolean isDelayExpirationWarning() {
+        return bit(4, 0x20);
+    }
+
+    public boolean isExit1() {
+        return bit(4, 0x40);
+    }
+
+    public boolean isExit2() {
+        return bit(4, 0x80);
+    }
+
+    // condition flags 4
+
+    public boolean isLedExtinguish() {
+        return bit(6, 0x01);
+    }
+
+    public boolean isCrossTiming() {
+        return bit(6, 0x02);
+    }
+
+    public boolean isRecentClosingBeingTimed() {
+        return bit(6, 0x04);
+    }
+
+    public boolean isExitErrorTriggered() {
+        return bit(6, 0x10);
+    }
+
+    public boolean isAutoHomeInhibited() {
+        return bit(6, 0x20);
+    }
+
+    public boolean isSensorLowBattery() {
+        return bit(6, 0x40);
+    }
+
+    public boolean isSensorLostSupervision() {
+        return bit(6, 0x80);
+    }
+
+    // condition flags 5
+
+    public boolean isZoneBypassed() {
+        return bit(7, 0x01);
+    }
+
+    public boolean isForceArmTriggeredByAutoArm() {
+        return bit(7, 0x02);
+    }
+
+    public boolean isReadyToArm() {
+        return bit(7, 0x04);
+    }
+
+    public boolean isReadyToForceArm() {
+        return bit(7, 0x08);
+    }
+
+    public boolean isValidPinAccepted() {
+        return bit(7, 0x10);
+    }
+
+    public boolean isChimeOn() {
+        return bit(7, 0x20);
+    }
+
+    public boolean isErrorBeep() {
+        return bit(7, 0x40);
+    }
+
+    public boolean isToneOn() {
+        return bit(7, 0x80);
+    }
+
+    // condition flags 6
+
+    public boolean isEntry1() {
+        return bit(8, 0x01);
+    }
+
+    public boolean isOpenPeriod() {
+        return bit(8, 0x02);
+    }
+
+    public boolean isCancelReportInStack() {
+        return bit(8, 0x20);
+    }
+
+    public boolean isKeySwitchArmed() {
+        return bit(8, 0x40);
+    }
+
+    public boolean isDelayTripInProgress() {
+        return bit(8, 0x80);
+    }
+
+}
@@ -0,0 +1,54 @@
+package org.openhab.binding.nx584.internal.panel.message;
+
+/**
+ * Partitions snapshot message (0x07), condition of all 8 partitions.
+ */
+public class PartitionsSnapshotView extends MessageView {
+
+    public static final int PARTITIONS = 8;
+
+    public PartitionsSnapshotView() {
+        super(0x07, 9);
+    }
+
+    /** @param partition Partition number, 1 ... 8 */
+    public boolean isValid(int partition) {
+        return bit(partition, 0x01);
+    }
+
+    /** @param partition Partition number, 1 ... 8 */
+    public boolean isReady(int partition) {
+        return bit(partition, 0x02);
+    }
+
+    /** @param partition Partition number, 1 ... 8 */
+    public boolean isArmed(int partition) {
+        return bit(partition, 0x04);
+    }
+
+    /** @param partition Partition number, 1 ... 8 */
+    public boolean isStayMode(int partition) {
+        return bit(partition, 0x08);
+    }
+
+    /** @param partition Partition number, 1 ... 8 */
+    public boolean isChimeMode(int partition) {
+        return bit(partition, 0x10);
+    }
+
+    /** @param partition Partition number, 1 ... 8 */
+    public boolean isEntryDelay(int partition) {
+        return bit(partition, 0x20);
+    }
+
+    /** @param partition Partition number, 1 ... 8 */
+    public boolean isExitDelay(int partition) {
+        return bit(partition, 0x40);
+    }
+
+    /** @param partition Partition number, 1 ... 8 */
+    public boolean isPreviousAlarm(int partition) {
+        return bit(partition, 0x80);
+    }
+
+}
@@ -0,0 +1,216 @@
+package org.openhab.binding.nx584.internal.panel.message;
+
+/**
+ * System status message (0x08).
+ */
+public class SystemStatusView extends MessageView {
+
+    public SystemStatusView() {
+        super(0x08, 12);
+    }
+
+    public int getPanelId() {
+        return unsigned(1);
+    }
+
+    // flags 1
+
+    public boolean isLineSeizure() {
+        return bit(2, 0x01);
+    }
+
+    public boolean isOffHook() {
+        return bit(2, 0x02);
+    }
+
+    public boolean isInitialHandshakeReceived() {
+        return bit(2, 0x04);
+    }
+
+    public boolean isDownloadInProgress() {
+        return bit(2, 0x08);
+    }
+
+    public boolean isDialerDelayInProgress() {
+        return bit(2, 0x10);
+    }
+
+    public boolean isUsingBackupPhone() {
+        return bit(2, 0x20);
+    }
+
+    public boolean isListenInActive() {
+        return bit(2, 0x40);
+    }
+
+    public boolean isTwoWayLockout() {
+        return bit(2, 0x80);
+    }
+
+    // flags 2
+
+    public boolean isGroundFault() {
+        return bit(3, 0x01);
+    }
+
+    public boolean isPhoneFault() {
+        return bit(3, 0x02);
+    }
+
+    public boolean isFailToCommunicate() {
+        return bit(3, 0x04);
+    }
+
+    public boolean isFuseFault() {
+        return bit(3, 0x08);
+    }
+
+    public boolean isBoxTamper() {
+        return bit(3, 0x10);
+    }
+
+    public boolean isSirenTamper() {
+        return bit(3, 0x20);
+    }
+
+    public boolean isLowBattery() {
+        return bit(3, 0x40);
+    }
+
+    public boolean isACFail() {
+        return bit(3, 0x80);
+    }
+
+    // flags 3
+
+    public boolean isExpanderBoxTamper() {
+        return bit(4, 0x01);
+    }
+
+    public boolean isExpanderACFailure() {
+        return bit(4, 0x02);
+    }
+
+    public boolean isExpanderLowBattery() {
+        return bit(4, 0x04);
+    }
+
+    public boolean isExpanderLossOfSupervision() {
+        return bit(4, 0x08);
+    }
+
+    public boolean isExpanderAuxOverCurrent() {
+        return bit(4, 0x10);
+    }
+
+    public boolean isAuxCommunicationChannelFailure() {
+        return bit(4, 0x20);
+    }
+
+    public boolean isExpanderBellFault() {
+        return bit(4, 0x40);
+    }
+
+    // flags 4
+
+    public boolean isSixDigitPinEnabled() {
+        return bit(5, 0x01);
+    }
+
+    public boolean isProgrammingTokenInUse() {
+        return bit(5, 0x02);
+    }
+
+    public boolean isPinRequiredForLocalDownload() {
+        return bit(5, 0x04);
+    }
+
+    public boolean isGlobalPulsingBuzzer() {
+        return bit(5, 0x08);
+    }
+
+    public boolean isGlobalSirenOn() {
+        return bit(5, 0x10);
+    }
+
+    public boolean isGlobalSteadySiren() {
+        return bit(5, 0x20);
+    }
+
+    public boolean isBusDeviceLineSeized() {
+        return bit(5, 0x40);
+    }
+
+    public boolean isBusDeviceSniffMode() {
+        return bit(5, 0x80);
+    }
+
+    // flags 5
+
+    public boolean isDynamicBatteryTest() {
+        return bit(6, 0x01);
+    }
+
+    public boolean isACPowerOn() {
+        return bit(6, 0x02);
+    }
+
+    public boolean isLowBatteryMemory() {
+        return bit(6, 0x04);
+    }
+
+    public boolean isGroundFaultMemory() {
+        return bit(6, 0x08);
+    }
+
+    public boolean isFireAlarmVerificationTimed() {
+        return bit(6, 0x10);
+    }
+
+    public boolean isSmokePowerReset() {
+        return bit(6, 0x20);
+    }
+
+    public boolean is50HzLinePower() {
+        return bit(6, 0x40);
+    }
+
+    public boolean isTimingHighVoltageBatteryCharge() {
+        return bit(6, 0x80);
+    }
+
+    // flags 6
+
+    public boolean isCommunicationSinceLastAutotest() {
+        return bit(7, 0x01);
+    }
+
+    public boolean isPowerUpDelayInProgress() {
+        return bit(7, 0x02);
+    }
+
+    public boolean isWalkTestMode() {
+        return bit(7, 0x04);
+    }
+
+    public boolean isLossOfSystemTime() {
+        return bit(7, 0x08);
+    }
+
+    public boolean isEnrollRequested() {
+        return bit(7, 0x10);
+    }
+
+    public boolean isTestFixtureMode() {
+        return bit(7, 0x20);
+    }
+
+    public boolean isControlShutdownMode() {
+        return bit(7, 0x40);
+    }
+
+    public boolean isTimingCancelWindow() {
+        return bit(7, 0x80);
+    }
+
+}
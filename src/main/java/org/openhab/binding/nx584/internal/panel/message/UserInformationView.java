@@ -0,0 +1,31 @@
+package org.openhab.binding.nx584.internal.panel.message;
+
+/**
+ * User information reply (0x12).
+ */
+public class UserInformationView extends MessageView {
+
+    /** Bit of {@link #getAuthority()}: authority of an output rather than a user. */
+    public static final int AUTHORITY_OUTPUT = 0x80;
+    /** Bit of {@link #getAuthority()} of a user: master / program. */
+    public static final int AUTHORITY_MASTER = 0x08;
+
+    public UserInformationView() {
+        super(0x12, 7);
+    }
+
+    public int getUser() {
+        return unsigned(1);
+    }
+
+    /** Authority flags, meaning depends on the master bit (0x80). */
+    public int getAuthority() {
+        return unsigned(5);
+    }
+
+    /** Partitions the user is authorized for, bit 0 for partition 1. */
+    public int getPartitionMask() {
+        return unsigned(6);
+    }
+
+}
@@ -0,0 +1,24 @@
+package org.openhab.binding.nx584.internal.panel.message;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Zone name message (0x03).
+ */
+public class ZoneNameView extends MessageView {
+
+    public ZoneNameView() {
+        super(0x03, 18);
+    }
+
+    /** Zone number, 1 for zone 1. */
+    public int getZone() {
+        return unsigned(1) + 1;
+    }
+
+    /** Zone name, 16 characters. */
+    public String getName() {
+        return new String(data, 2, 16, StandardCharsets.UTF_8);
+    }
+
+}
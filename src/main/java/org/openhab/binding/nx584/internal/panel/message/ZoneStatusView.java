@@ -0,0 +1,176 @@
+package org.openhab.binding.nx584.internal.panel.message;
+
+/**
+ * Zone status message (0x04).
+ */
+public class ZoneStatusView extends MessageView {
+
+    /** Faulted (open) bit of {@link #getConditionFlags()}. */
+    public static final long CONDITION_FAULTED = 0x01;
+    /** Bypassed bit of {@link #getConditionFlags()}. */
+    public static final long CONDITION_BYPASSED = 0x08;
+    /** Alarm memory bit of {@link #getConditionFlags()}. */
+    public static final long CONDITION_ALARM_MEMORY = 0x100;
+
+    public ZoneStatusView() {
+        super(0x04, 8);
+    }
+
+    /** Zone number, 1 for zone 1. */
+    public int getZone() {
+        return unsigned(1) + 1;
+    }
+
+    /** Partitions of this zone, bit 0 for partition 1. */
+    public int getPartitionMask() {
+        return unsigned(2);
+    }
+
+    // zone type flags
+
+    /** Zone type flags 1 ... 3, flags 1 in the low byte. */
+    public int getTypeFlags() {
+        return unsigned(3) | (unsigned(4) << 8) | (unsigned(5) << 16);
+    }
+
+    public boolean isFire() {
+        return bit(3, 0x01);
+    }
+
+    public boolean is24Hour() {
+        return bit(3, 0x02);
+    }
+
+    public boolean isKeySwitch() {
+        return bit(3, 0x04);
+    }
+
+    public boolean isFollower() {
+        return bit(3, 0x08);
+    }
+
+    public boolean isEntryExitDelay1() {
+        return bit(3, 0x10);
+    }
+
+    public boolean isEntryExitDelay2() {
+        return bit(3, 0x20);
+    }
+
+    public boolean isInterior() {
+        return bit(3, 0x40);
+    }
+
+    public boolean isLocalOnly() {
+        return bit(3, 0x80);
+    }
+
+    public boolean isKeypadSounder() {
+        return bit(4, 0x01);
+    }
+
+    public boolean isYelpingSiren() {
+        return bit(4, 0x02);
+    }
+
+    public boolean isSteadySiren() {
+        return bit(4, 0x04);
+    }
+
+    public boolean isChime() {
+        return bit(4, 0x08);
+    }
+
+    public boolean isBypassable() {
+        return bit(4, 0x10);
+    }
+
+    public boolean isGroupBypassable() {
+        return bit(4, 0x20);
+    }
+
+    public boolean isForceArmable() {
+        return bit(4, 0x40);
+    }
+
+    public boolean isEntryGuard() {
+        return bit(4, 0x80);
+    }
+
+    public boolean isFastLoopResponse() {
+        return bit(5, 0x01);
+    }
+
+    public boolean isDoubleEOLTamper() {
+        return bit(5, 0x02);
+    }
+
+    public boolean isTroubleZone() {
+        return bit(5, 0x04);
+    }
+
+    public boolean isCrossZone() {
+        return bit(5, 0x08);
+    }
+
+    public boolean isDialerDelay() {
+        return bit(5, 0x10);
+    }
+
+    public boolean isSwingerShutdown() {
+        return bit(5, 0x20);
+    }
+
+    public boolean isRestorable() {
+        return bit(5, 0x40);
+    }
+
+    public boolean isListenIn() {
+        return bit(5, 0x80);
+    }
+
+    // zone condition flags
+
+    /** Zone condition flags 1 and 2, flags 1 in the low byte. */
+    public long getConditionFlags() {
+        return unsigned(6) | (unsigned(7) << 8);
+    }
+
+    public boolean isFaulted() {
+        return bit(6, 0x01);
+    }
+
+    public boolean isTampered() {
+        return bit(6, 0x02);
+    }
+
+    public boolean isTrouble() {
+        return bit(6, 0x04);
+    }
+
+    public boolean isBypassed() {
+        return bit(6, 0x08);
+    }
+
+    /** Zone inhibited (force armed). */
+    public boolean isInhibited() {
+        return bit(6, 0x10);
+    }
+
+    public boolean isLowBattery() {
+        return bit(6, 0x20);
+    }
+
+    public boolean isLossOfSupervision() {
+        return bit(6, 0x40);
+    }
+
+    public boolean isAlarmMemory() {
+        return bit(7, 0x01);
+    }
+
+    public boolean isBypassMemory() {
+        return bit(7, 0x02);
+    }
+
+}
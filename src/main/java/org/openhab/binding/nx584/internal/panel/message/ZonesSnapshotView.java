@@ -0,0 +1,59 @@
+package org.openhab.binding.nx584.internal.panel.message;
+
+/**
+ * Zones snapshot message (0x05), condition of 16 consecutive zones.
+ */
+public class ZonesSnapshotView extends MessageView {
+
+    public static final int ZONES = 16;
+
+    public ZonesSnapshotView() {
+        super(0x05, 10);
+    }
+
+    /** Number of the first zone in this snapshot, 1 for zone 1. */
+    public int getFirstZone() {
+        return unsigned(1) * ZONES + 1;
+    }
+
+    /** @param i Index of zone in snapshot, 0 ... 15 */
+    public boolean isFaulted(int i) {
+        return flag(i, 0x01);
+    }
+
+    /** @param i Index of zone in snapshot, 0 ... 15 */
+    public boolean isBypassed(int i) {
+        return flag(i, 0x02);
+    }
+
+    /** Zone trouble (tamper, low battery or lost). @param i Index of zone in snapshot, 0 ... 15 */
+    public boolean isTrouble(int i) {
+        return flag(i, 0x04);
+    }
+
+    /** @param i Index of zone in snapshot, 0 ... 15 */
+    public boolean isAlarmMemory(int i) {
+        return flag(i, 0x08);
+    }
+
+    /**
+     * Zones of this snapshot with a flag set, decoded a byte at a time.
+     *
+     * @param mask Flag in the low nibble: 0x01 faulted, 0x02 bypassed, 0x04 trouble, 0x08 alarm memory
+     * @return Bit i set if the flag is set for zone index i
+     */
+    public int getZones(int mask) {
+        int zones = 0;
+        for (int i = 0; i < ZONES / 2; i++) {
+            int b = unsigned(2 + i);
+            zones |= ((b & mask) != 0 ? 1 : 0) << 2 * i | ((b & mask << 4) != 0 ? 2 : 0) << 2 * i;
+        }
+        return zones;
+    }
+
+    // two zones per byte, low nibble first
+    private boolean flag(int i, int mask) {
+        return bit(2 + i / 2, (i & 1) == 0 ? mask : mask << 4);
+    }
+
+}
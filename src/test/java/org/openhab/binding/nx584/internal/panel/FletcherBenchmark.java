@@ -0,0 +1,68 @@
+package org.openhab.binding.nx584.internal.panel;
+
+import java.util.Random;
+
+/**
+ * Compares the running {@link Fletcher} sum with the per-byte modulo
+ * formulation it replaced ({@link FletcherTest#reference(byte[], int)}) on
+ * frames of the length of log event (0x0a) and zones snapshot (0x05)
+ * messages and on the longest frame accepted by the decoder.
+ *
+ * Not a test, run main: java ... FletcherBenchmark [rounds]
+ */
+public class FletcherBenchmark {
+
+    private static final int FRAMES = 4096;
+    private static final int LENGTHS[] = { 10, 12, FrameDecoder.MAX_LENGTH };
+
+    private static int sink;
+
+    public static void main(String args[]) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        Random random = new Random(39);
+        for (int length : LENGTHS) {
+            byte frames[][] = new byte[FRAMES][length];
+            for (byte frame[] : frames) {
+                random.nextBytes(frame);
+            }
+            // warm up both, then measure
+            reference(frames, rounds / 4);
+            running(frames, rounds / 4);
+            double old = reference(frames, rounds);
+            double now = running(frames, rounds);
+            System.out.println(String.format("%2d byte frames: per-byte modulo %.2f ns/byte, running sum %.2f ns/byte, "
+                    + "%.1fx", length, old, now, old / now));
+        }
+        // use the sums, so the loops are not optimized away
+        System.out.println("sums " + sink);
+    }
+
+    /** Nanoseconds per byte. */
+    private static double reference(byte frames[][], int rounds) {
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (byte frame[] : frames) {
+                byte sum[] = FletcherTest.reference(frame, frame.length);
+                sink += sum[0] ^ sum[1];
+            }
+        }
+        return (System.nanoTime() - start) / ((double) rounds * frames.length * frames[0].length);
+    }
+
+    /** Nanoseconds per byte. */
+    private static double running(byte frames[][], int rounds) {
+        Fletcher fletcher = new Fletcher();
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (byte frame[] : frames) {
+                fletcher.reset(frame.length);
+                for (byte b : frame) {
+                    fletcher.add(b & 0xff);
+                }
+                sink += fletcher.getSum1() ^ fletcher.getSum2();
+            }
+        }
+        return (System.nanoTime() - start) / ((double) rounds * frames.length * frames[0].length);
+    }
+
+}
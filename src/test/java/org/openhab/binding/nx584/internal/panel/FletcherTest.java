@@ -0,0 +1,95 @@
+package org.openhab.binding.nx584.internal.panel;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * {@link Fletcher} is bit exact with the per-byte modulo formulation it
+ * replaced.
+ */
+public class FletcherTest {
+
+    /** Fletcher sum of the first len bytes of data, as computed before the running sum. */
+    static byte[] reference(byte data[], int len) {
+        int sum1 = len, sum2 = len;
+        for (int i = 0; i < len; i++) {
+            int d = data[i] & 0xff;
+            if (0xff - sum1 < d) {
+                sum1 = (sum1 + 1) & 0xff;
+            }
+            sum1 = (sum1 + d) & 0xff;
+            if (sum1 == 0xff) {
+                sum1 = 0;
+            }
+            if (0xff - sum2 < sum1) {
+                sum2 = (sum2 + 1) & 0xff;
+            }
+            sum2 = (sum2 + sum1) & 0xff;
+            if (sum2 == 0xff) {
+                sum2 = 0;
+            }
+        }
+        return new byte[] { (byte) sum1, (byte) sum2 };
+    }
+
+    private final Fletcher fletcher = new Fletcher();
+
+    private void assertSame(byte data[]) {
+        byte expected[] = reference(data, data.length);
+        fletcher.reset(data.length);
+        for (byte b : data) {
+            fletcher.add(b & 0xff);
+        }
+        assertEquals(expected[0] & 0xff, fletcher.getSum1());
+        assertEquals(expected[1] & 0xff, fletcher.getSum2());
+    }
+
+    @Test
+    public void allOneAndTwoByteMessages() {
+        for (int a = 0; a < 256; a++) {
+            assertSame(new byte[] { (byte) a });
+            for (int b = 0; b < 256; b++) {
+                assertSame(new byte[] { (byte) a, (byte) b });
+            }
+        }
+    }
+
+    @Test
+    public void allLastBytesAfterRandomPrefixes() {
+        Random random = new Random(39);
+        for (int i = 0; i < 20000; i++) {
+            byte data[] = new byte[4];
+            random.nextBytes(data);
+            for (int b = 0; b < 256; b++) {
+                data[3] = (byte) b;
+                assertSame(data);
+            }
+        }
+    }
+
+    @Test
+    public void randomMessages() {
+        Random random = new Random(584);
+        for (int i = 0; i < 100000; i++) {
+            byte data[] = new byte[1 + random.nextInt(255)];
+            random.nextBytes(data);
+            assertSame(data);
+        }
+    }
+
+    @Test
+    public void saturatedMessages() {
+        for (int length = 1; length < 256; length++) {
+            byte data[] = new byte[length];
+            Arrays.fill(data, (byte) 0xff);
+            assertSame(data);
+            Arrays.fill(data, (byte) 0xfe);
+            assertSame(data);
+        }
+    }
+
+}
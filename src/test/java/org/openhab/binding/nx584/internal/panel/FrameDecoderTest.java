@@ -0,0 +1,119 @@
+package org.openhab.binding.nx584.internal.panel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.openhab.binding.nx584.internal.panel.FrameDecoder.Status;
+
+/**
+ * Round trip of {@link NX584Proxy#encode(byte[])} and {@link FrameDecoder},
+ * malformed frames and random input.
+ */
+public class FrameDecoderTest {
+
+    private final FrameDecoder decoder = new FrameDecoder();
+    private final Random random = new Random(584);
+
+    /** Feed bytes, return the status after the last one. */
+    private Status put(byte... bytes) {
+        Status status = Status.PENDING;
+        for (byte b : bytes) {
+            status = decoder.put(b & 0xff);
+        }
+        return status;
+    }
+
+    private byte[] randomMessage(int length) {
+        byte msg[] = new byte[length];
+        random.nextBytes(msg);
+        return msg;
+    }
+
+    @Test
+    public void decodesEncodedMessages() {
+        for (int i = 0; i < 10000; i++) {
+            byte msg[] = randomMessage(1 + random.nextInt(FrameDecoder.MAX_LENGTH));
+            assertEquals(Status.MESSAGE, put(NX584Proxy.encode(msg)));
+            assertArrayEquals(msg, decoder.getMessage());
+        }
+    }
+
+    @Test
+    public void decodesStuffedChecksum() {
+        // find messages whose fletcher sum bytes need stuffing
+        int found = 0;
+        for (int i = 0; found < 100; i++) {
+            byte msg[] = { 0x04, (byte) i, (byte) (i >> 8) };
+            byte frame[] = NX584Proxy.encode(msg);
+            if (frame[frame.length - 2] != FrameDecoder.ESCAPE && frame[frame.length - 3] != FrameDecoder.ESCAPE) {
+                continue;
+            }
+            found++;
+            assertEquals(Status.MESSAGE, put(frame));
+            assertArrayEquals(msg, decoder.getMessage());
+        }
+    }
+
+    @Test
+    public void reportsChecksumError() {
+        byte frame[] = NX584Proxy.encode(new byte[] { 0x28 });
+        frame[frame.length - 1]++;
+        assertEquals(Status.CHECKSUM_ERROR, put(frame));
+        assertArrayEquals(new byte[] { 0x28 }, decoder.getMessage());
+    }
+
+    @Test
+    public void discardsBadLength() {
+        assertEquals(Status.DISCARDED, put((byte) 0x7e, (byte) 0));
+        assertEquals(Status.DISCARDED, put((byte) 0x7e, (byte) (FrameDecoder.MAX_LENGTH + 1)));
+        // rest of the oversized frame is ignored until the next start character
+        assertEquals(Status.PENDING, put(new byte[FrameDecoder.MAX_LENGTH + 3]));
+        byte msg[] = randomMessage(FrameDecoder.MAX_LENGTH);
+        assertEquals(Status.MESSAGE, put(NX584Proxy.encode(msg)));
+        assertArrayEquals(msg, decoder.getMessage());
+    }
+
+    @Test
+    public void discardsBadEscape() {
+        assertEquals(Status.DISCARDED, put((byte) 0x7e, (byte) 2, (byte) 0x7d, (byte) 0x00));
+        assertEquals(Status.MESSAGE, put(NX584Proxy.encode(new byte[] { 0x1d })));
+    }
+
+    @Test
+    public void startCharacterBeginsNewFrame() {
+        byte first[] = NX584Proxy.encode(new byte[] { 0x04, 1, 2, 3, 4, 5, 6, 7 });
+        byte second[] = NX584Proxy.encode(new byte[] { 0x06, 1, 2, 3, 4, 5, 6, 7, 8 });
+        for (int cut = 1; cut < first.length; cut++) {
+            for (int i = 0; i < cut; i++) {
+                assertEquals(Status.PENDING, decoder.put(first[i] & 0xff));
+            }
+            assertEquals(Status.DISCARDED, decoder.put(second[0] & 0xff));
+            for (int i = 1; i < second.length - 1; i++) {
+                assertEquals(Status.PENDING, decoder.put(second[i] & 0xff));
+            }
+            assertEquals(Status.MESSAGE, decoder.put(second[second.length - 1] & 0xff));
+            assertEquals(0x06, decoder.getMessage()[0]);
+        }
+    }
+
+    @Test
+    public void recoversFromRandomInput() {
+        for (int i = 0; i < 1000; i++) {
+            for (byte b : randomMessage(random.nextInt(200))) {
+                Status status = decoder.put(b & 0xff);
+                if (status == Status.MESSAGE || status == Status.CHECKSUM_ERROR) {
+                    int length = decoder.getMessage().length;
+                    assertTrue(length >= 1 && length <= FrameDecoder.MAX_LENGTH);
+                }
+            }
+            byte msg[] = randomMessage(1 + random.nextInt(FrameDecoder.MAX_LENGTH));
+            assertEquals(Status.MESSAGE, put(NX584Proxy.encode(msg)));
+            assertArrayEquals(msg, decoder.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.openhab.binding.nx584.internal.panel;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares platform and virtual link threads with many panels configured:
+ * platform threads of the JVM while the links are connected, round trip of
+ * zone status requests sent to all panels at once, and the time to
+ * disconnect them.
+ *
+ * Each panel is a {@link SimulatedPanel}, which runs one platform thread of
+ * its own; those are not counted. Virtual threads are only measured on a JVM
+ * that supports them (Java 21).
+ *
+ * Not a test, run main: java ... LinkThreadsBenchmark [requests per panel]
+ */
+public class LinkThreadsBenchmark {
+
+    private static final int PANELS[] = { 1, 20, 100 };
+    private static final long WAIT = 10000;
+
+    public static void main(String args[]) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        System.out.println("java " + System.getProperty("java.version") + ", " + requests + " requests per panel");
+        for (int panels : PANELS) {
+            run(panels, requests, false);
+            if (LinkThreads.isVirtualSupported()) {
+                run(panels, requests, true);
+            }
+        }
+        if (!LinkThreads.isVirtualSupported()) {
+            System.out.println("virtual threads not supported by this JVM, not measured");
+        }
+    }
+
+    private static void run(int panels, int requests, boolean virtual) throws Exception {
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        int before = mx.getThreadCount();
+        List<NX584> links = new ArrayList<>();
+        for (int i = 0; i < panels; i++) {
+            SimulatedPanel panel = new SimulatedPanel();
+            NX584 nx584 = new NX584(panel);
+            nx584.setVirtualThreads(virtual);
+            nx584.connect();
+            if (!panel.awaitOpen(WAIT)) {
+                throw new IllegalStateException("panel " + i + " not opened");
+            }
+            links.add(nx584);
+        }
+        // link threads only, without the thread of each simulated panel
+        int threads = mx.getThreadCount() - before - panels;
+
+        // warm up, then measure
+        roundTrips(links, requests);
+        long times[] = roundTrips(links, requests);
+        Arrays.sort(times);
+
+        long start = System.nanoTime();
+        for (NX584 nx584 : links) {
+            nx584.disconnect();
+        }
+        double disconnect = (System.nanoTime() - start) / 1e6;
+        System.out.println(String.format("%3d panels, %s threads: %4d platform threads, round trip p50 %.2f ms, "
+                + "p99 %.2f ms, disconnect %.0f ms", panels, virtual ? "virtual " : "platform", threads,
+                percentile(times, 0.5), percentile(times, 0.99), disconnect));
+    }
+
+    /** Send requests zone status requests to each panel at once, return the round trip of each in nanoseconds. */
+    private static long[] roundTrips(List<NX584> links, int requests) throws Exception {
+        int n = links.size() * requests;
+        long times[] = new long[n];
+        List<CompletableFuture<byte[]>> replies = new ArrayList<>(n);
+        int k = 0;
+        for (int r = 0; r < requests; r++) {
+            for (NX584 nx584 : links) {
+                final int i = k++;
+                final long sent = System.nanoTime();
+                replies.add(nx584.sendCommand((byte) 0x24, (byte) r).whenComplete((reply, t) -> {
+                    times[i] = System.nanoTime() - sent;
+                }));
+            }
+        }
+        for (CompletableFuture<byte[]> reply : replies) {
+            reply.get(WAIT, TimeUnit.MILLISECONDS);
+        }
+        return times;
+    }
+
+    /** Milliseconds. */
+    private static double percentile(long sorted[], double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))] / 1e6;
+    }
+
+}
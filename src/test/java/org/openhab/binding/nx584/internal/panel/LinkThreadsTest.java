@@ -0,0 +1,121 @@
+package org.openhab.binding.nx584.internal.panel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Starting and stopping link threads, as virtual threads where the JVM
+ * supports them and as platform threads otherwise.
+ */
+public class LinkThreadsTest {
+
+    private static final long WAIT = 2000;
+
+    /** Thread.isVirtual() through reflection, false before Java 21. */
+    private static boolean isVirtual(Thread thread) throws Exception {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /** Start a thread that sleeps until interrupted, return it once it runs. */
+    private static Thread startSleeper(LinkThreads threads, String name) throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        Thread thread = threads.start(name, () -> {
+            running.countDown();
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException e) {
+                // stop
+            }
+        });
+        assertTrue(running.await(WAIT, TimeUnit.MILLISECONDS));
+        return thread;
+    }
+
+    private void startAndStop(LinkThreads threads, boolean virtual) throws Exception {
+        List<Thread> started = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = startSleeper(threads, "test " + i);
+            assertEquals("test " + i, thread.getName());
+            assertEquals(virtual, isVirtual(thread));
+            started.add(thread);
+        }
+        assertTrue(LinkThreads.stop(WAIT, started.toArray(new Thread[0])).isEmpty());
+        for (Thread thread : started) {
+            assertFalse(thread.isAlive());
+        }
+    }
+
+    @Test
+    public void platformThreads() throws Exception {
+        LinkThreads threads = new LinkThreads();
+        threads.setVirtual(false);
+        assertFalse(threads.isVirtual());
+        startAndStop(threads, false);
+    }
+
+    @Test
+    public void virtualThreads() throws Exception {
+        Assume.assumeTrue("virtual threads not supported", LinkThreads.isVirtualSupported());
+        LinkThreads threads = new LinkThreads();
+        threads.setVirtual(true);
+        assertTrue(threads.isVirtual());
+        startAndStop(threads, true);
+    }
+
+    @Test
+    public void fallsBackToPlatformThreads() throws Exception {
+        Assume.assumeFalse("virtual threads supported", LinkThreads.isVirtualSupported());
+        LinkThreads threads = new LinkThreads();
+        threads.setVirtual(true);
+        assertFalse(threads.isVirtual());
+        startAndStop(threads, false);
+    }
+
+    @Test
+    public void stopReportsThreadsStillAlive() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Thread stubborn = new LinkThreads().start("stubborn", () -> {
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // ignore, keep running
+                }
+            }
+        });
+        List<Thread> alive = LinkThreads.stop(100, stubborn, null, Thread.currentThread());
+        assertEquals(1, alive.size());
+        assertTrue(alive.get(0) == stubborn);
+        assertFalse(Thread.interrupted());
+        release.countDown();
+        stubborn.join(WAIT);
+        assertFalse(stubborn.isAlive());
+    }
+
+    @Test
+    public void disconnectLeavesNoLinkThreads() throws Exception {
+        NX584 nx584 = new NX584(new SimulatedPanel());
+        // platform threads, since only those are listed by getAllStackTraces
+        nx584.setVirtualThreads(false);
+        nx584.connect();
+        assertEquals(0x08, nx584.sendCommand((byte) 0x28).get(WAIT, TimeUnit.MILLISECONDS)[0]);
+        nx584.disconnect();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            assertFalse(thread.getName(), thread.getName().startsWith("NX584 ") && thread.isAlive());
+        }
+    }
+
+}
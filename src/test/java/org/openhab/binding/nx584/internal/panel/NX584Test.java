@@ -0,0 +1,235 @@
+package org.openhab.binding.nx584.internal.panel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.nx584.handler.NX584Commands;
+
+/**
+ * Runs {@link NX584} against a {@link SimulatedPanel}: framing, acknowledges,
+ * failures, reconnects and latency.
+ */
+public class NX584Test {
+
+    // milliseconds to wait for a response in tests that expect one
+    private static final long WAIT = 2000;
+    // gates, milliseconds; generous since the pipes and threads share the build machine
+    private static final double ROUND_TRIP_P95 = 50;
+    private static final long FULL_REFRESH_64_ZONES = 2000;
+
+    private SimulatedPanel panel;
+    private NX584 nx584;
+    private final BlockingQueue<byte[]> dispatched = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Boolean> linkStatus = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws Exception {
+        panel = new SimulatedPanel();
+        nx584 = new NX584(panel);
+        nx584.addSecurityPanelListener((type, data) -> dispatched.add(data));
+        nx584.addLinkListener(up -> linkStatus.add(up));
+        nx584.connect();
+        assertTrue(panel.awaitOpen(WAIT));
+        assertEquals(Boolean.TRUE, linkStatus.poll(WAIT, TimeUnit.MILLISECONDS));
+    }
+
+    @After
+    public void tearDown() {
+        nx584.disconnect();
+    }
+
+    /** Next message of type passed to the listeners, skipping others; null after timeout. */
+    private byte[] dispatched(int type) throws InterruptedException {
+        for (byte data[] = dispatched.poll(WAIT, TimeUnit.MILLISECONDS); data != null; data = dispatched.poll(WAIT,
+                TimeUnit.MILLISECONDS)) {
+            if ((data[0] & 63) == type) {
+                return data;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void requestCompletesWithReply() throws Exception {
+        byte reply[] = nx584.sendCommand((byte) 0x28).get(WAIT, TimeUnit.MILLISECONDS);
+        assertEquals(0x08, reply[0]);
+        assertArrayEquals(new byte[] { 0x28 }, panel.receive(WAIT));
+    }
+
+    @Test
+    public void commandCompletesWithAcknowledge() throws Exception {
+        byte reply[] = nx584.sendCommand((byte) 0x3d, (byte) 2, (byte) 1).get(WAIT, TimeUnit.MILLISECONDS);
+        assertArrayEquals(new byte[] { 0x1d }, reply);
+    }
+
+    @Test
+    public void startAndEscapeCharactersAreStuffed() throws Exception {
+        byte msg[] = { 0x3d, 0x7e, 0x7d };
+        nx584.sendCommand(msg).get(WAIT, TimeUnit.MILLISECONDS);
+        assertArrayEquals(msg, panel.receive(WAIT));
+        assertEquals(0, panel.getChecksumErrors());
+
+        byte status[] = { 0x04, 0x7d, 0x7e, 0, 0, 0, 0, 0x7e };
+        panel.send(status);
+        assertArrayEquals(status, dispatched(0x04));
+    }
+
+    @Test
+    public void messageWithAcknowledgeRequestIsAcknowledged() throws Exception {
+        panel.send((byte) 0x84, (byte) 0, (byte) 1, (byte) 0, (byte) 0, (byte) 0, (byte) 1, (byte) 0);
+        assertNotNull(dispatched(0x04));
+        assertArrayEquals(new byte[] { 0x1d }, panel.receive(WAIT));
+    }
+
+    @Test
+    public void messageWithBadChecksumIsNaked() throws Exception {
+        byte frame[] = NX584Proxy.encode(new byte[] { 0x04, 0, 1, 0, 0, 0, 1, 0 });
+        frame[frame.length - 1] ^= 0x01;
+        panel.sendRaw(frame);
+        assertArrayEquals(new byte[] { 0x1e }, panel.receive(WAIT));
+        // the frame is not passed on
+        assertNull(dispatched.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void sequenceStopsAtFailedMessage() throws Exception {
+        panel.setResponder(msg -> (msg[0] & 63) == 0x3f && msg[1] == 6 ? new byte[] { 0x1c }
+                : SimulatedPanel.defaultReply(msg));
+        List<CompletableFuture<byte[]>> steps = nx584.sendSequence(new byte[] { 0x3f, 2 }, new byte[] { 0x3f, 6 },
+                new byte[] { 0x3d, 3, 3 });
+        assertArrayEquals(new byte[] { 0x1d }, steps.get(0).get(WAIT, TimeUnit.MILLISECONDS));
+        try {
+            steps.get(1).get(WAIT, TimeUnit.MILLISECONDS);
+            fail("failed step completed normally");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof NX584Exception);
+            assertEquals(0x1c, ((NX584Exception) e.getCause()).getMessageType());
+        }
+        try {
+            steps.get(2).get(WAIT, TimeUnit.MILLISECONDS);
+            fail("step after failed step completed normally");
+        } catch (CancellationException e) {
+            // expected
+        }
+        assertEquals(0x3f, panel.receive(WAIT)[0]);
+        assertEquals(0x3f, panel.receive(WAIT)[0]);
+        assertNull("step after failed step was sent", panel.receive(200));
+    }
+
+    @Test
+    public void requestWithoutResponseTimesOut() throws Exception {
+        panel.setResponder(msg -> null);
+        long start = System.currentTimeMillis();
+        try {
+            nx584.sendCommand(200, (byte) 0x28).get(WAIT, TimeUnit.MILLISECONDS);
+            fail("request without response completed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertTrue(System.currentTimeMillis() - start < WAIT);
+        // the next request is sent after the timeout
+        panel.setResponder(SimulatedPanel::defaultReply);
+        assertEquals(0x08, nx584.sendCommand((byte) 0x28).get(WAIT, TimeUnit.MILLISECONDS)[0]);
+    }
+
+    @Test
+    public void cancelledRequestKeepsLinkUntilResponse() throws Exception {
+        panel.setResponder(msg -> null);
+        CompletableFuture<byte[]> cancelled = nx584.sendCommand((byte) 0x28);
+        assertArrayEquals(new byte[] { 0x28 }, panel.receive(WAIT));
+        cancelled.cancel(false);
+        CompletableFuture<byte[]> next = nx584.sendCommand((byte) 0x28);
+        assertNull("next request sent before the response", panel.receive(200));
+        // late reply to the cancelled request
+        panel.send((byte) 0x08, (byte) 0x0a, (byte) 0, (byte) 0, (byte) 0, (byte) 0, (byte) 0, (byte) 0, (byte) 0,
+                (byte) 0, (byte) 0, (byte) 0);
+        assertArrayEquals(new byte[] { 0x28 }, panel.receive(WAIT));
+        panel.send((byte) 0x08, (byte) 0x0b, (byte) 0, (byte) 0, (byte) 0, (byte) 0, (byte) 0, (byte) 0, (byte) 0,
+                (byte) 0, (byte) 0, (byte) 0);
+        assertEquals(0x0b, next.get(WAIT, TimeUnit.MILLISECONDS)[1]);
+    }
+
+    @Test
+    public void reconnectsAfterEndOfStream() throws Exception {
+        panel.endOfStream();
+        assertEquals(Boolean.FALSE, linkStatus.poll(3 * WAIT, TimeUnit.MILLISECONDS));
+        assertTrue(panel.awaitOpen(3 * WAIT));
+        assertEquals(Boolean.TRUE, linkStatus.poll(WAIT, TimeUnit.MILLISECONDS));
+        assertTrue(nx584.isLinkUp());
+        assertEquals(0x08, nx584.sendCommand((byte) 0x28).get(WAIT, TimeUnit.MILLISECONDS)[0]);
+    }
+
+    @Test
+    public void roundTripLatency() throws Exception {
+        List<CompletableFuture<byte[]>> replies = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            replies.add(nx584.sendCommand((byte) 0x24, (byte) i));
+        }
+        for (CompletableFuture<byte[]> reply : replies) {
+            reply.get(WAIT, TimeUnit.MILLISECONDS);
+        }
+        double p95 = nx584.getRoundTripStats().percentile(0.95);
+        assertTrue("round trip p95 " + p95 + " ms", p95 >= 0 && p95 < ROUND_TRIP_P95);
+    }
+
+    @Test
+    public void fullRefreshOf64Zones() throws Exception {
+        NX584Commands commands = new NX584Commands(nx584);
+        long start = System.nanoTime();
+        List<CompletableFuture<byte[]>> replies = new ArrayList<>();
+        for (int zone = 1; zone <= 64; zone++) {
+            replies.add(commands.getZoneStatus(zone));
+            replies.add(commands.getZoneName(zone));
+        }
+        for (CompletableFuture<byte[]> reply : replies) {
+            reply.get(WAIT, TimeUnit.MILLISECONDS);
+        }
+        long millis = (System.nanoTime() - start) / 1000000;
+        assertTrue("full refresh took " + millis + " ms", millis < FULL_REFRESH_64_ZONES);
+    }
+
+    @Test
+    public void refreshOf192ZonesIsAdmitted() throws Exception {
+        // rule queries take part of their own budget first
+        for (int i = 0; i < 100; i++) {
+            nx584.sendCommand((byte) 0x24, (byte) i);
+        }
+        NX584Commands refresh = new NX584Commands(nx584, true);
+        List<CompletableFuture<byte[]>> replies = new ArrayList<>();
+        for (int zone = 1; zone <= 192; zone++) {
+            replies.add(refresh.getZoneStatus(zone));
+            replies.add(refresh.getZoneName(zone));
+        }
+        for (CompletableFuture<byte[]> reply : replies) {
+            reply.get(5 * WAIT, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Test
+    public void urgentMessageReachesListenersWithinSlo() throws Exception {
+        // partition 1 status, siren on (condition flags 2, bit 1)
+        panel.send((byte) 0x06, (byte) 0, (byte) 0, (byte) 0x02, (byte) 0, (byte) 0, (byte) 0, (byte) 0,
+                (byte) 0);
+        assertNotNull(dispatched(0x06));
+        assertEquals(1, nx584.getUrgentDispatchStats().getTotal());
+        assertEquals(0, nx584.getUrgentDispatchViolations());
+    }
+
+}
@@ -0,0 +1,183 @@
+package org.openhab.binding.nx584.internal.panel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * {@link SerialLink} to a scripted panel over piped streams, in place of the
+ * serial port.
+ *
+ * The panel decodes the frames sent by {@link NX584} with a {@link FrameDecoder},
+ * queues them for the test and answers each one with the reply of the
+ * responder. Every open creates a new pair of pipes, so the link can be
+ * closed and reopened like a serial port.
+ */
+class SimulatedPanel implements SerialLink {
+
+    private static final int PIPE_SIZE = 4096;
+
+    /** Replies to a message received from the binding, null for no reply. */
+    private volatile Function<byte[], byte[]> responder = SimulatedPanel::defaultReply;
+
+    private final BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+    private final Semaphore opened = new Semaphore(0);
+    private volatile PipedInputStream in;
+    private volatile PipedOutputStream toBinding;
+    private volatile PipedInputStream fromBinding;
+    private volatile PipedOutputStream out;
+    private volatile boolean open;
+    private volatile int checksumErrors;
+
+    /**
+     * Acknowledge commands, answer requests with an empty reply of the expected
+     * type (index byte copied from the request), ignore acknowledges.
+     */
+    static byte[] defaultReply(byte msg[]) {
+        int type = msg[0] & 63;
+        if (type == 0x1d || type == 0x1e) {
+            return null;
+        }
+        int replyType = Request.replyType(type);
+        if (replyType == 0x1d) {
+            return new byte[] { 0x1d };
+        }
+        byte reply[] = new byte[replyType == 0x08 ? 12 : 8];
+        reply[0] = (byte) replyType;
+        if (msg.length > 1) {
+            reply[1] = msg[1];
+        }
+        return reply;
+    }
+
+    void setResponder(Function<byte[], byte[]> responder) {
+        this.responder = responder;
+    }
+
+    @Override
+    public synchronized void open() throws IOException {
+        in = new PipedInputStream(PIPE_SIZE);
+        toBinding = new PipedOutputStream(in);
+        fromBinding = new PipedInputStream(PIPE_SIZE);
+        out = new PipedOutputStream(fromBinding);
+        open = true;
+        Thread panel = new Thread(new Panel(fromBinding), "simulated panel");
+        panel.setDaemon(true);
+        panel.start();
+        opened.release();
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        try {
+            toBinding.close();
+            in.close();
+            out.close();
+            fromBinding.close();
+        } catch (IOException e) {
+            // closing pipes only fails if already closed
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return in;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return out;
+    }
+
+    /** Wait until the binding (re)opened the link. */
+    boolean awaitOpen(long timeout) throws InterruptedException {
+        return opened.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /** Next message received from the binding, null after timeout. */
+    byte[] receive(long timeout) throws InterruptedException {
+        return received.poll(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /** Next message of the given type received from the binding, skipping others; null after timeout. */
+    byte[] receive(int type, long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        for (long left = timeout; left > 0; left = end - System.currentTimeMillis()) {
+            byte msg[] = receive(left);
+            if (msg != null && (msg[0] & 63) == type) {
+                return msg;
+            }
+        }
+        return null;
+    }
+
+    /** Frames from the binding with a bad fletcher sum. */
+    int getChecksumErrors() {
+        return checksumErrors;
+    }
+
+    /** Send a message to the binding, framed and stuffed. */
+    void send(byte... msg) throws IOException {
+        sendRaw(NX584Proxy.encode(msg));
+    }
+
+    /** Send bytes to the binding as they are. */
+    synchronized void sendRaw(byte... bytes) throws IOException {
+        toBinding.write(bytes);
+        toBinding.flush();
+    }
+
+    /** End the stream read by the binding, like a serial adapter being unplugged. */
+    synchronized void endOfStream() throws IOException {
+        toBinding.close();
+    }
+
+    private class Panel implements Runnable {
+
+        private final InputStream is;
+        private final FrameDecoder decoder = new FrameDecoder();
+
+        Panel(InputStream is) {
+            this.is = is;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int b = is.read(); b >= 0; b = is.read()) {
+                    switch (decoder.put(b)) {
+                        case MESSAGE:
+                            byte msg[] = decoder.getMessage();
+                            received.add(msg);
+                            byte reply[] = responder.apply(msg);
+                            if (reply != null) {
+                                send(reply);
+                            }
+                            break;
+                        case CHECKSUM_ERROR:
+                            checksumErrors++;
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            } catch (IOException e) {
+                // link closed
+            }
+        }
+    }
+
+}